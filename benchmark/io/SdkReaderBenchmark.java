@@ -0,0 +1,109 @@
+package sudoku.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+
+import mapfile.MapfileReader;
+import mapfile.ReadError;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of SdkReader.loadSquares against the regular expression
+ * parser it replaced, on the squares of the larger shipped .sdk files. The
+ * old parser only reads numbers, so the symbols of a file that declares its
+ * values are turned into their numbers first, and both parse the same text.
+ * The old parser also splits numbers of two digits apart, so on 16.sdk and
+ * 25.sdk it returns more squares than there are; it is timed as it was.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SdkReaderBenchmark {
+
+	/** The parser loadSquares replaced, as it was. */
+	private static List<Integer> regexLoadSquares(String string) {
+		List<Character> charset = Arrays.asList(' ', '.', '0', '1', '2', '3',
+				'4', '5', '6', '7', '8', '9');
+		Set<Character> illegal = new HashSet<Character>();
+		for (char letter : string.toCharArray()) {
+			if (!charset.contains(letter)) {
+				illegal.add(letter);
+			}
+		}
+		for (char letter : illegal) {
+			try {
+				string = string.replaceAll("" + letter, " ");
+			} catch (PatternSyntaxException error) {
+				string = string.replaceAll("\\" + letter, " ");
+			}
+		}
+		string = string.replaceAll("\\|", " ");
+		List<Integer> squares = new LinkedList<Integer>();
+		for (String square : string.split("\\s*")) {
+			if (square.length() > 0) {
+				if (square.charAt(0) == ".".charAt(0)) {
+					squares.add(0);
+				} else {
+					squares.add(Integer.parseInt(square));
+				}
+			}
+		}
+		return squares;
+	}
+
+	@Param( { "9.sdk", "16.sdk", "25.sdk" })
+	public String file;
+
+	/** The squares of the file, with numbers for values. */
+	private String squares;
+
+	@Setup
+	public void setup() throws FileNotFoundException, ReadError {
+		Map<String, String> dictionary = new MapfileReader(new File(file))
+				.read();
+		squares = dictionary.get("squares");
+		Alphabet alphabet = SdkReader.loadValues(dictionary.get("values"));
+		if (alphabet == null) {
+			return;
+		}
+		List<String> symbols = Arrays.asList(alphabet.getSymbols());
+		StringBuilder numbers = new StringBuilder();
+		for (String token : squares.split("(?<=\\s)|(?=\\s)")) {
+			int index = symbols.indexOf(token);
+			numbers.append(index < 0 ? token : Integer.toString(index + 1));
+		}
+		squares = numbers.toString();
+	}
+
+	@Benchmark
+	public int[] loadSquares() {
+		return SdkReader.loadSquares(squares);
+	}
+
+	@Benchmark
+	public List<Integer> regex() {
+		return regexLoadSquares(squares);
+	}
+}
@@ -0,0 +1,141 @@
+package sudoku.model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mapfile.ReadError;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import sudoku.io.SdkReader;
+
+/**
+ * JMH benchmarks of the main operations on every shipped .sdk file. The
+ * benchmarks live under benchmark/, apart from the solver sources under
+ * java/, so only they need JMH to build. Compile both trees with JMH and its
+ * annotation processor on the path, and run from the top of the project
+ * through main, which adds the GC profiler for allocation rates and writes
+ * the results as JSON for comparing commits. The benchmarks that change the
+ * puzzle work on a clone, so clone is measured on its own too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PuzzleBenchmark {
+
+	/**
+	 * Run every benchmark with the GC profiler, writing JSON results to the
+	 * file named by the first argument, or jmh-result.json.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(PuzzleBenchmark.class.getName())
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length > 0 ? args[0] : "jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+
+	@Param( { "4.sdk", "6.sdk", "9.sdk", "12.sdk", "16.sdk", "25.sdk",
+			"squiggly.sdk", "escargot.sdk" })
+	public String file;
+
+	/** Text of the file, for parsing without the file system. */
+	private String document;
+	/** Square guessed at, the first one not fixed in the file. */
+	private int guessIndex;
+	/** The puzzle as read from the file. */
+	private Puzzle puzzle;
+	private PuzzleDumper solvedDumper;
+
+	@Setup
+	public void setup() throws IOException, InvalidPuzzleError, ReadError,
+			InconsistentPuzzleError {
+		puzzle = new SdkReader(new File(file)).read();
+		StringBuilder text = new StringBuilder();
+		Reader in = new FileReader(file);
+		try {
+			char[] buffer = new char[1 << 13];
+			int count;
+			while ((count = in.read(buffer)) >= 0) {
+				text.append(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+		document = text.toString();
+		guessIndex = 0;
+		while (puzzle.getSquares()[guessIndex].isFixed()) {
+			guessIndex++;
+		}
+		Puzzle solved = puzzle.clone();
+		solved.solve(Strategy.SEARCH);
+		solvedDumper = new PuzzleDumper(solved, null);
+	}
+
+	@Benchmark
+	public Puzzle cloning() {
+		return puzzle.clone();
+	}
+
+	@Benchmark
+	public String dump() {
+		return solvedDumper.dump();
+	}
+
+	@Benchmark
+	public List<Integer> guessByIndex() {
+		return puzzle.guessByIndex(guessIndex);
+	}
+
+	/** Parse the text of the file, values declared by it included. */
+	@Benchmark
+	public int[] parse() throws InvalidPuzzleError, ReadError {
+		return new SdkReader().read(document).getValues();
+	}
+
+	@Benchmark
+	public Puzzle prune() {
+		Puzzle copy = puzzle.clone();
+		copy.prune();
+		return copy;
+	}
+
+	@Benchmark
+	public Puzzle read() throws FileNotFoundException, InvalidPuzzleError,
+			ReadError {
+		return new SdkReader(new File(file)).read();
+	}
+
+	@Benchmark
+	public Puzzle solve() throws InconsistentPuzzleError {
+		Puzzle copy = puzzle.clone();
+		copy.solve();
+		return copy;
+	}
+}
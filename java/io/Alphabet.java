@@ -0,0 +1,139 @@
+package sudoku.io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The symbols declared by the values key of a .sdk file. The first symbol
+ * stands for 1, the second for 2, and so on. When every symbol is a single
+ * character, each character of the squares is looked up in a table, so
+ * squares need not be separated. Longer symbols must be separated by
+ * whitespace or borders.
+ */
+public class Alphabet {
+
+	/** Largest alphabet supported, enough for a 64x64 puzzle. */
+	public static final int MAX_SYMBOLS = 64;
+
+	/** Make the alphabet for the symbols in a values description. */
+	public static Alphabet parse(String string) throws SdkReadError {
+		String[] symbols = string.trim().split("\\s+");
+		if (symbols.length == 1 && symbols[0].length() == 0) {
+			throw (new SdkReadError("No values are given."));
+		}
+		if (symbols.length > MAX_SYMBOLS) {
+			throw (new SdkReadError("At most " + MAX_SYMBOLS
+					+ " values are supported."));
+		}
+		return new Alphabet(symbols);
+	}
+
+	/** Symbol of each value, starting from 1 at index 0. */
+	private String[] symbols;
+	/** Value of each single-character symbol, indexed by character. */
+	private int[] table;
+	/** Value of each symbol, when some are longer than one character. */
+	private Map<String, Integer> tokens;
+	/** Whether each character appears in some symbol. */
+	private boolean[] inSymbol;
+
+	public Alphabet(String[] symbols) throws SdkReadError {
+		this.symbols = symbols.clone();
+		int maxChar = 0;
+		boolean single = true;
+		for (String symbol : symbols) {
+			for (int i = 0; i < symbol.length(); i++) {
+				maxChar = Math.max(maxChar, symbol.charAt(i));
+			}
+			single &= symbol.length() == 1;
+			if (symbol.indexOf('.') >= 0) {
+				throw (new SdkReadError("\".\" cannot be used as a value."));
+			}
+		}
+		inSymbol = new boolean[maxChar + 1];
+		if (single) {
+			table = new int[maxChar + 1];
+		} else {
+			tokens = new HashMap<String, Integer>();
+		}
+		for (int i = 0; i < symbols.length; i++) {
+			String symbol = symbols[i];
+			for (int j = 0; j < symbol.length(); j++) {
+				inSymbol[symbol.charAt(j)] = true;
+			}
+			boolean repeated = single ? table[symbol.charAt(0)] != 0
+					: tokens.containsKey(symbol);
+			if (repeated) {
+				throw (new SdkReadError("\"" + symbol
+						+ "\" is given as a value twice."));
+			}
+			if (single) {
+				table[symbol.charAt(0)] = i + 1;
+			} else {
+				tokens.put(symbol, i + 1);
+			}
+		}
+	}
+
+	/** Get the symbol for a value. */
+	public String format(int value) {
+		return symbols[value - 1];
+	}
+
+	/** Get the symbols, the first standing for 1. */
+	public String[] getSymbols() {
+		return symbols.clone();
+	}
+
+	/** Check if a character is part of some symbol. */
+	private boolean isSymbolChar(char letter) {
+		return letter < inSymbol.length && inSymbol[letter];
+	}
+
+	/**
+	 * Load the squares. Each symbol is a square and each '.' is an unknown
+	 * square; any other character separates them.
+	 */
+	public int[] loadSquares(CharSequence string) throws SdkReadError {
+		int[] squares = new int[string.length()];
+		int count = 0;
+		int start = -1;
+		for (int i = 0; i <= string.length(); i++) {
+			char letter = i < string.length() ? string.charAt(i) : ' ';
+			if (table != null) {
+				if (letter == '.') {
+					squares[count++] = 0;
+				} else if (isSymbolChar(letter)) {
+					squares[count++] = table[letter];
+				}
+				continue;
+			}
+			if (isSymbolChar(letter)) {
+				if (start < 0) {
+					start = i;
+				}
+				continue;
+			}
+			if (start >= 0) {
+				String token = string.subSequence(start, i).toString();
+				Integer value = tokens.get(token);
+				if (value == null) {
+					throw (new SdkReadError("\"" + token
+							+ "\" is not a value available for this puzzle."));
+				}
+				squares[count++] = value;
+				start = -1;
+			}
+			if (letter == '.') {
+				squares[count++] = 0;
+			}
+		}
+		return Arrays.copyOf(squares, count);
+	}
+
+	/** Count the symbols. */
+	public int size() {
+		return symbols.length;
+	}
+}
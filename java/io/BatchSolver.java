@@ -0,0 +1,157 @@
+package sudoku.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import sudoku.model.InconsistentPuzzleError;
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleFactory;
+import sudoku.model.Strategy;
+
+/**
+ * Solves files with one puzzle per line on a work-stealing pool. Lines are
+ * handed out in chunks, and solutions are written in input order. At most a
+ * fixed number of chunks are in flight, so memory does not grow with the
+ * size of the input.
+ */
+public class BatchSolver {
+
+	/**
+	 * Solve the puzzles in the file named by the first argument, or stdin,
+	 * writing them to the file named by the second argument, or stdout.
+	 * Throughput is reported on stderr.
+	 */
+	public static void main(String[] args) throws IOException,
+			InterruptedException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				args.length > 0 ? new FileInputStream(args[0]) : System.in,
+				"US-ASCII"), 1 << 16);
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				args.length > 1 ? new FileOutputStream(args[1]) : System.out,
+				"US-ASCII"), 1 << 16);
+		BatchSolver solver = new BatchSolver(Runtime.getRuntime()
+				.availableProcessors(), 256, Strategy.SEARCH);
+		long start = System.nanoTime();
+		long count = solver.solve(in, out);
+		solver.shutdown();
+		out.flush();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("Solved %d puzzles in %.3f s (%.0f puzzles/s)%n",
+				count, seconds, count / seconds);
+		if (args.length > 1) {
+			out.close();
+		}
+	}
+
+	/** Solve one line, returning the solution or the line with the error. */
+	protected static String solveLine(String line, Strategy strategy) {
+		try {
+			Puzzle puzzle = PuzzleFactory.makePuzzle(LineFormat.parse(line));
+			puzzle.solve(strategy);
+			return LineFormat.format(puzzle.getSquares());
+		} catch (SdkReadError error) {
+			return line + "\t" + error.getMessage();
+		} catch (InvalidPuzzleError error) {
+			return line + "\t" + error.getMessage();
+		} catch (InconsistentPuzzleError error) {
+			return line + "\tThe puzzle is not consistent.";
+		}
+	}
+
+	/** Number of lines solved by one task. */
+	private int chunkSize;
+	/** Most chunks that may be in flight at once. */
+	private int maxChunks;
+	private ForkJoinPool pool;
+	private Strategy strategy;
+
+	public BatchSolver(int parallelism, int chunkSize, Strategy strategy) {
+		this.chunkSize = chunkSize;
+		this.strategy = strategy;
+		maxChunks = parallelism * 4;
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Solve every line of the input, writing one line per puzzle to the
+	 * output in the same order. Blank lines are skipped. Returns the number
+	 * of puzzles.
+	 */
+	public long solve(BufferedReader in, Writer out) throws IOException,
+			InterruptedException {
+		Queue<Future<String[]>> pending = new ArrayDeque<Future<String[]>>();
+		long count = 0;
+		String[] chunk = new String[chunkSize];
+		int size = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.trim().length() == 0) {
+				continue;
+			}
+			chunk[size] = line;
+			size++;
+			count++;
+			if (size == chunkSize) {
+				if (pending.size() == maxChunks) {
+					write(pending.remove(), out);
+				}
+				pending.add(pool.submit(solveChunk(chunk, size)));
+				chunk = new String[chunkSize];
+				size = 0;
+			}
+		}
+		if (size > 0) {
+			pending.add(pool.submit(solveChunk(chunk, size)));
+		}
+		while (!pending.isEmpty()) {
+			write(pending.remove(), out);
+		}
+		return count;
+	}
+
+	/** Make the task that solves the first size lines of a chunk. */
+	private Callable<String[]> solveChunk(final String[] chunk, final int size) {
+		return new Callable<String[]>() {
+			public String[] call() {
+				String[] solutions = new String[size];
+				for (int i = 0; i < size; i++) {
+					solutions[i] = solveLine(chunk[i], strategy);
+				}
+				return solutions;
+			}
+		};
+	}
+
+	/** Stop the pool once no more input will be given. */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/** Wait for a chunk and write its solutions. */
+	private void write(Future<String[]> chunk, Writer out) throws IOException,
+			InterruptedException {
+		String[] solutions;
+		try {
+			solutions = chunk.get();
+		} catch (ExecutionException error) {
+			throw (new RuntimeException(error.getCause()));
+		}
+		for (String solution : solutions) {
+			out.write(solution);
+			out.write('\n');
+		}
+	}
+}
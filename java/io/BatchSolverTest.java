@@ -0,0 +1,65 @@
+package sudoku.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import sudoku.model.Strategy;
+
+public class BatchSolverTest {
+
+	private static final String ESCARGOT = "1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3..";
+	private static final String ESCARGOT_SOLVED = "162857493534129678789643521475312986913586742628794135356478219241935867897261354";
+	private static final String FOUR = "3..12......21..3";
+	private static final String FOUR_SOLVED = "3421213443121243";
+
+	@Test
+	public void parse() throws SdkReadError {
+		assertArrayEquals(new int[] { 3, 0, 0, 1, 2, 0, 0, 0, 0, 0, 0, 2, 1,
+				0, 0, 3 }, LineFormat.parse(FOUR + "  "));
+		StringBuilder sixteen = new StringBuilder("G");
+		while (sixteen.length() < 256) {
+			sixteen.append('.');
+		}
+		assertEquals(16, LineFormat.parse(sixteen)[0]);
+		try {
+			LineFormat.parse("123");
+			fail("Three squares do not make a puzzle.");
+		} catch (SdkReadError error) {
+		}
+		try {
+			LineFormat.parse("5...");
+			fail("5 is too big for a 2x2 puzzle.");
+		} catch (SdkReadError error) {
+		}
+	}
+
+	@Test
+	public void solveInOrder() throws IOException, InterruptedException {
+		StringBuilder input = new StringBuilder();
+		StringBuilder wanted = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			input.append(i % 3 == 0 ? FOUR : ESCARGOT).append('\n');
+			wanted.append(i % 3 == 0 ? FOUR_SOLVED : ESCARGOT_SOLVED).append(
+					'\n');
+		}
+		input.append('\n').append("11..............\n");
+		BatchSolver solver = new BatchSolver(4, 7, Strategy.SEARCH);
+		StringWriter output = new StringWriter();
+		long count = solver.solve(new BufferedReader(new StringReader(input
+				.toString())), output);
+		solver.shutdown();
+		assertEquals(101, count);
+		assertTrue(output.toString().startsWith(wanted.toString()));
+		assertTrue(output.toString().substring(wanted.length()).startsWith(
+				"11..............\t"));
+	}
+}
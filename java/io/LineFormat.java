@@ -0,0 +1,85 @@
+package sudoku.io;
+
+import static java.lang.Math.sqrt;
+
+import sudoku.model.Square;
+
+/**
+ * The one-puzzle-per-line format: one character per square, row by row, with
+ * '.' or '0' for an unknown square, '1' to '9' for the values one to nine and
+ * letters, in either case, for ten and up.
+ */
+public class LineFormat {
+
+	/** Get the character for a value. */
+	public static char format(int value) {
+		if (value <= 0) {
+			return '.';
+		}
+		if (value <= 9) {
+			return (char) ('0' + value);
+		}
+		return (char) ('A' + value - 10);
+	}
+
+	/** Format the squares of a puzzle as a line. */
+	public static String format(Square[] squares) {
+		char[] line = new char[squares.length];
+		for (int i = 0; i < squares.length; i++) {
+			line[i] = squares[i].isFixed() ? format(squares[i].getValue())
+					: '.';
+		}
+		return new String(line);
+	}
+
+	/**
+	 * Parse a line into the squares of a puzzle. Trailing whitespace is
+	 * ignored; anything else that is not a square is an error.
+	 */
+	public static int[] parse(CharSequence line) throws SdkReadError {
+		int length = line.length();
+		while (length > 0 && Character.isWhitespace(line.charAt(length - 1))) {
+			length--;
+		}
+		int width = (int) sqrt(length);
+		if (width * width != length) {
+			throw (new SdkReadError("A line of " + length
+					+ " characters is not a square puzzle."));
+		}
+		int[] squares = new int[length];
+		for (int i = 0; i < length; i++) {
+			char letter = line.charAt(i);
+			int value = value(letter);
+			if (value < 0) {
+				throw (new SdkReadError("\"" + letter
+						+ "\" is not a square."));
+			}
+			if (value > width) {
+				throw (new SdkReadError("\"" + letter
+						+ "\" is not a value available for this puzzle."));
+			}
+			squares[i] = value;
+		}
+		return squares;
+	}
+
+	/**
+	 * Get the value of a character, 0 for an unknown square, or -1 if it is
+	 * not a square.
+	 */
+	public static int value(int letter) {
+		if (letter == '.' || letter == '0') {
+			return 0;
+		}
+		if (letter >= '1' && letter <= '9') {
+			return letter - '0';
+		}
+		if (letter >= 'A' && letter <= 'Z') {
+			return letter - 'A' + 10;
+		}
+		if (letter >= 'a' && letter <= 'z') {
+			return letter - 'a' + 10;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,186 @@
+package sudoku.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sends puzzles to a SolverServer from several connections at once, each
+ * keeping a number of requests in flight, and measures the throughput and
+ * the latency of each request.
+ */
+public class LoadGenerator {
+
+	/**
+	 * Send the puzzles of a file with one per line to a server. The
+	 * arguments are the file, the port, and optionally the number of
+	 * connections, the requests sent by each and the requests each keeps in
+	 * flight.
+	 */
+	public static void main(String[] args) throws IOException,
+			InterruptedException {
+		List<String> puzzles = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(args[0]), "US-ASCII"));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.trim().length() > 0) {
+				puzzles.add(line);
+			}
+		}
+		in.close();
+		int port = Integer.parseInt(args[1]);
+		int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int requests = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		int depth = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+		System.out.println(new LoadGenerator("localhost", port).run(puzzles,
+				connections, requests, depth));
+	}
+
+	private String host;
+	private int port;
+
+	public LoadGenerator(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Send requests puzzles, taken in turn from the list, on each of a number
+	 * of connections, keeping up to depth in flight on each.
+	 */
+	public Report run(final List<String> puzzles, int connections,
+			final int requests, final int depth) throws IOException,
+			InterruptedException {
+		ExecutorService clients = Executors.newFixedThreadPool(connections);
+		List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+		for (int i = 0; i < connections; i++) {
+			final int offset = i;
+			tasks.add(new Callable<long[]>() {
+				public long[] call() throws IOException {
+					return send(puzzles, offset, requests, depth);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		List<Future<long[]>> results = clients.invokeAll(tasks);
+		long elapsed = System.nanoTime() - start;
+		clients.shutdown();
+		long[] latencies = new long[0];
+		int errors = 0;
+		for (Future<long[]> result : results) {
+			long[] part;
+			try {
+				part = result.get();
+			} catch (ExecutionException error) {
+				throw (new IOException(error.getCause()));
+			}
+			int count = latencies.length;
+			latencies = Arrays.copyOf(latencies, count + part.length);
+			for (int i = 0; i < part.length; i++) {
+				// Failed requests are marked by a negative latency.
+				if (part[i] < 0) {
+					errors++;
+				}
+				latencies[count + i] = Math.abs(part[i]);
+			}
+		}
+		Arrays.sort(latencies);
+		return new Report(latencies, errors, elapsed);
+	}
+
+	/**
+	 * Send requests on one connection, returning the latency of each in
+	 * nanoseconds, negative for those that could not be solved.
+	 */
+	private long[] send(List<String> puzzles, int offset, int requests,
+			int depth) throws IOException {
+		Socket socket = new Socket(host, port);
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), "US-ASCII"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket
+					.getOutputStream(), "US-ASCII"));
+			long[] latencies = new long[requests];
+			Queue<Long> sent = new ArrayDeque<Long>();
+			int next = 0;
+			for (int received = 0; received < requests; received++) {
+				while (next < requests && sent.size() < depth) {
+					out.write(puzzles.get((offset + next) % puzzles.size()));
+					out.write('\n');
+					sent.add(System.nanoTime());
+					next++;
+				}
+				out.flush();
+				String response = in.readLine();
+				if (response == null) {
+					throw (new IOException("The server closed the connection."));
+				}
+				long latency = System.nanoTime() - sent.remove();
+				latencies[received] = response.indexOf('\t') >= 0 ? -latency
+						: latency;
+			}
+			return latencies;
+		} finally {
+			socket.close();
+		}
+	}
+
+	/** The outcome of a run. */
+	public static class Report {
+		private long elapsed;
+		private int errors;
+		/** Latency of each request in nanoseconds, in increasing order. */
+		private long[] latencies;
+
+		Report(long[] latencies, int errors, long elapsed) {
+			this.latencies = latencies;
+			this.errors = errors;
+			this.elapsed = elapsed;
+		}
+
+		/** Count the requests answered. */
+		public int getCount() {
+			return latencies.length;
+		}
+
+		/** Count the requests answered with an error. */
+		public int getErrors() {
+			return errors;
+		}
+
+		/** Get the latency below which the given fraction of requests fall. */
+		public long percentile(double fraction) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(fraction * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index,
+					latencies.length - 1))];
+		}
+
+		public String toString() {
+			return String.format("%d requests, %d errors in %.3f s"
+					+ " (%.0f requests/s), latency p50 %.3f ms,"
+					+ " p99 %.3f ms, max %.3f ms", latencies.length, errors,
+					elapsed / 1e9, latencies.length / (elapsed / 1e9),
+					percentile(0.5) / 1e6, percentile(0.99) / 1e6,
+					percentile(1) / 1e6);
+		}
+	}
+}
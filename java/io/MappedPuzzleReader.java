@@ -0,0 +1,293 @@
+package sudoku.io;
+
+import static java.lang.Math.sqrt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleFactory;
+import sudoku.model.PuzzleGeometry;
+
+/**
+ * Reads files of many puzzles by mapping them into memory and parsing the
+ * squares straight out of the mapped bytes, with no copy into strings.
+ * Either .sdb files or files with one puzzle per line are read. The file is
+ * split into ranges that end on puzzle boundaries, each with its own
+ * mapping, so several threads can parse it at once.
+ */
+public class MappedPuzzleReader implements Closeable {
+
+	/** Longest range a single mapping can hold. */
+	static final long MAX_RANGE = Integer.MAX_VALUE;
+
+	/**
+	 * Parse the file named by the first argument on the number of threads
+	 * given by the second, or all processors, and report the throughput on
+	 * stderr.
+	 */
+	public static void main(String[] args) throws IOException, SdkReadError,
+			InterruptedException, ExecutionException {
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		MappedPuzzleReader reader = new MappedPuzzleReader(new File(args[0]));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+		for (final Range range : reader.split(threads * 4)) {
+			tasks.add(new Callable<Long>() {
+				public Long call() throws SdkReadError {
+					long count = 0;
+					while (range.read() != null) {
+						count++;
+					}
+					return count;
+				}
+			});
+		}
+		long count = 0;
+		for (Future<Long> task : pool.invokeAll(tasks)) {
+			count += task.get();
+		}
+		pool.shutdown();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("Parsed %d puzzles in %.3f s (%.0f puzzles/s,"
+				+ " %.1f MB/s)%n", count, seconds, count / seconds, reader
+				.size()
+				/ seconds / 1e6);
+		reader.close();
+	}
+
+	private FileChannel channel;
+	/** Offset of the first puzzle. */
+	private long dataStart;
+	/** Header of a .sdb file, or null for one puzzle per line. */
+	private SdbReader header;
+	/** Longest range handed out. */
+	private long maxRange;
+	/** Bytes per puzzle of a .sdb file. */
+	private int recordLength;
+	private long size;
+
+	public MappedPuzzleReader(File file) throws IOException, SdkReadError {
+		this(file, MAX_RANGE);
+	}
+
+	MappedPuzzleReader(File file, long maxRange) throws IOException,
+			SdkReadError {
+		this.maxRange = maxRange;
+		channel = new RandomAccessFile(file, "r").getChannel();
+		// Close the file if the header cannot be read, as no caller can.
+		boolean read = false;
+		try {
+			readHeader(file);
+			read = true;
+		} finally {
+			if (!read) {
+				channel.close();
+			}
+		}
+	}
+
+	/** Read the header of a .sdb file, if the file is one. */
+	private void readHeader(File file) throws IOException, SdkReadError {
+		size = channel.size();
+		ByteBuffer magic = ByteBuffer.allocate(SdbWriter.MAGIC.length);
+		channel.read(magic, 0);
+		if (Arrays.equals(magic.array(), SdbWriter.MAGIC)) {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				header = new SdbReader(in);
+			} finally {
+				in.close();
+			}
+			dataStart = header.getHeaderLength();
+			recordLength = header.getRecordLength();
+			if (recordLength > maxRange) {
+				throw (new SdkReadError("A puzzle of " + recordLength
+						+ " bytes is too long to map."));
+			}
+		}
+	}
+
+	/** Find the offset just past the end of the line holding offset. */
+	private long lineEnd(long offset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+		while (offset < size) {
+			buffer.clear();
+			int count = channel.read(buffer, offset);
+			for (int i = 0; i < count; i++) {
+				if (buffer.get(i) == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += count;
+		}
+		return size;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/** Get the alphabet of a .sdb file, or null. */
+	public Alphabet getAlphabet() {
+		return header == null ? null : header.getAlphabet();
+	}
+
+	/**
+	 * Get the geometry of a .sdb file. Returns null for one puzzle per line,
+	 * where each line has the width its length gives.
+	 */
+	public PuzzleGeometry getGeometry() {
+		return header == null ? null : header.getGeometry();
+	}
+
+	/** Get the size of the file in bytes. */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Split the file into at most count ranges of about the same size, in
+	 * file order, each ending on a puzzle boundary. More ranges are made if
+	 * the file is too large to map in count.
+	 */
+	public List<Range> split(int count) throws IOException {
+		long length = size - dataStart;
+		count = (int) Math.max(count, (length + maxRange / 2 - 1)
+				/ (maxRange / 2));
+		List<Range> ranges = new ArrayList<Range>(count);
+		long start = dataStart;
+		for (int i = 1; i <= count && start < size; i++) {
+			long end;
+			if (i == count) {
+				end = size;
+			} else if (header != null) {
+				long records = length / recordLength;
+				end = dataStart + records * i / count * recordLength;
+			} else {
+				end = lineEnd(dataStart + length * i / count - 1);
+			}
+			if (end <= start) {
+				continue;
+			}
+			if (end - start > maxRange) {
+				throw (new IOException("A line is too long to map."));
+			}
+			ranges.add(new Range(start, end));
+			start = end;
+		}
+		return ranges;
+	}
+
+	/**
+	 * A part of the file with its own mapping and position, to be read by
+	 * one thread.
+	 */
+	public class Range {
+		private MappedByteBuffer buffer;
+		private long end;
+		private long start;
+
+		Range(long start, long end) throws IOException {
+			this.start = start;
+			this.end = end;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end
+					- start);
+		}
+
+		/** Get the offset just past the end of the range. */
+		public long getEnd() {
+			return end;
+		}
+
+		/** Get the offset of the start of the range. */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Read the squares of the next puzzle, 0 meaning unknown. Returns null
+		 * at the end of the range.
+		 */
+		public int[] read() throws SdkReadError {
+			if (header != null) {
+				if (!buffer.hasRemaining()) {
+					return null;
+				}
+				if (buffer.remaining() < recordLength) {
+					throw (new SdkReadError("The last puzzle is cut short."));
+				}
+				return SdbReader.unpack(buffer, header.getGeometry()
+						.getWidth());
+			}
+			int limit = buffer.limit();
+			while (buffer.hasRemaining()) {
+				int lineStart = buffer.position();
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				buffer.position(lineEnd < limit ? lineEnd + 1 : lineEnd);
+				while (lineEnd > lineStart
+						&& Character.isWhitespace((char) buffer
+								.get(lineEnd - 1))) {
+					lineEnd--;
+				}
+				if (lineEnd > lineStart) {
+					return parseLine(lineStart, lineEnd - lineStart);
+				}
+			}
+			return null;
+		}
+
+		/** Parse a line of the mapping, as LineFormat.parse does. */
+		private int[] parseLine(int lineStart, int length)
+				throws SdkReadError {
+			int width = (int) sqrt(length);
+			if (width * width != length) {
+				throw (new SdkReadError("A line of " + length
+						+ " characters at byte " + (start + lineStart)
+						+ " is not a square puzzle."));
+			}
+			int[] squares = new int[length];
+			for (int i = 0; i < length; i++) {
+				int letter = buffer.get(lineStart + i) & 0xff;
+				squares[i] = LineFormat.value(letter);
+				if (squares[i] < 0 || squares[i] > width) {
+					throw (new SdkReadError("\"" + (char) letter
+							+ "\" at byte " + (start + lineStart + i)
+							+ " is not a value available for this puzzle."));
+				}
+			}
+			return squares;
+		}
+
+		/** Read the next puzzle, or null at the end of the range. */
+		public Puzzle readPuzzle() throws SdkReadError, InvalidPuzzleError {
+			int[] squares = read();
+			if (squares == null) {
+				return null;
+			}
+			if (header != null) {
+				return new Puzzle(squares, header.getGeometry());
+			}
+			return PuzzleFactory.makePuzzle(squares);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package sudoku.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import mapfile.ReadError;
+
+import org.junit.Test;
+
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+
+public class MappedPuzzleReaderTest {
+
+	/** Read every puzzle of every range, in order. */
+	private static List<int[]> readAll(List<MappedPuzzleReader.Range> ranges)
+			throws SdkReadError {
+		List<int[]> puzzles = new ArrayList<int[]>();
+		long end = -1;
+		for (MappedPuzzleReader.Range range : ranges) {
+			if (end >= 0) {
+				assertEquals(end, range.getStart());
+			}
+			end = range.getEnd();
+			int[] squares;
+			while ((squares = range.read()) != null) {
+				puzzles.add(squares);
+			}
+		}
+		return puzzles;
+	}
+
+	@Test
+	public void lines() throws IOException, SdkReadError {
+		Random random = new Random(3);
+		List<int[]> wanted = new ArrayList<int[]>();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			int width = i % 3 == 0 ? 4 : 9;
+			StringBuilder line = new StringBuilder();
+			for (int j = 0; j < width * width; j++) {
+				line.append(LineFormat.format(random.nextInt(width + 1)));
+			}
+			wanted.add(LineFormat.parse(line));
+			text.append(line).append(i % 7 == 0 ? "\r\n\n  \n" : "\n");
+		}
+		text.setLength(text.length() - 1);
+		File file = File.createTempFile("mappedpuzzlereadertest", ".txt");
+		try {
+			FileWriter out = new FileWriter(file);
+			out.write(text.toString());
+			out.close();
+			for (int count = 1; count <= 8; count++) {
+				MappedPuzzleReader reader = new MappedPuzzleReader(file,
+						count == 8 ? 200 : MappedPuzzleReader.MAX_RANGE);
+				assertNull(reader.getGeometry());
+				List<int[]> read = readAll(reader.split(count));
+				assertEquals(wanted.size(), read.size());
+				for (int i = 0; i < wanted.size(); i++) {
+					assertArrayEquals(wanted.get(i), read.get(i));
+				}
+				reader.close();
+			}
+			out = new FileWriter(file);
+			out.write("3..12......21..3\n3..12...x..21..3\n");
+			out.close();
+			MappedPuzzleReader.Range range = new MappedPuzzleReader(file)
+					.split(1).get(0);
+			range.read();
+			try {
+				range.read();
+				fail("x is not a square.");
+			} catch (SdkReadError error) {
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void sdb() throws IOException, InvalidPuzzleError, ReadError {
+		SdkReader sdk = new SdkReader("squiggly.sdk");
+		Puzzle squiggly = sdk.read();
+		File file = File.createTempFile("mappedpuzzlereadertest", ".sdb");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			SdbWriter writer = new SdbWriter(out, squiggly.getGeometry(), null);
+			List<int[]> wanted = new ArrayList<int[]>();
+			for (int i = 0; i < 30; i++) {
+				int[] squares = squiggly.getValues();
+				squares[i] = i % 9 + 1;
+				wanted.add(squares);
+				writer.write(squares);
+			}
+			writer.close();
+			for (int count = 1; count <= 40; count += 13) {
+				MappedPuzzleReader reader = new MappedPuzzleReader(file, 100);
+				assertSame(squiggly.getGeometry(), reader.getGeometry());
+				List<MappedPuzzleReader.Range> ranges = reader.split(count);
+				List<int[]> read = readAll(ranges);
+				assertEquals(wanted.size(), read.size());
+				for (int i = 0; i < wanted.size(); i++) {
+					assertArrayEquals(wanted.get(i), read.get(i));
+				}
+				Puzzle first = reader.split(1).get(0).readPuzzle();
+				assertSame(squiggly.getGeometry(), first.getGeometry());
+				reader.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
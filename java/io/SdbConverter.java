@@ -0,0 +1,107 @@
+package sudoku.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+import mapfile.ReadError;
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+
+/**
+ * Converts between .sdk files and the binary .sdb format. Every .sdk file put
+ * into one .sdb file must have the same regions and values.
+ */
+public class SdbConverter {
+
+	/**
+	 * Convert files. "tosdb out.sdb in.sdk..." packs the puzzles into one
+	 * file; "tosdk in.sdb directory" writes each puzzle to its own numbered
+	 * .sdk file.
+	 */
+	public static void main(String[] args) throws InvalidPuzzleError,
+			ReadError, IOException {
+		if (args.length >= 2 && args[0].equals("tosdb")) {
+			String[] inputs = new String[args.length - 2];
+			System.arraycopy(args, 2, inputs, 0, inputs.length);
+			OutputStream out = new FileOutputStream(args[1]);
+			try {
+				System.err.println(toSdb(inputs, out) + " puzzles written.");
+			} finally {
+				out.close();
+			}
+		} else if (args.length == 3 && args[0].equals("tosdk")) {
+			InputStream in = new FileInputStream(args[1]);
+			try {
+				System.err.println(toSdk(in, new File(args[2]))
+						+ " puzzles written.");
+			} finally {
+				in.close();
+			}
+		} else {
+			System.err.println("Usage: SdbConverter tosdb out.sdb in.sdk...");
+			System.err.println("       SdbConverter tosdk in.sdb directory");
+			System.exit(2);
+		}
+	}
+
+	/** Write the puzzles of some .sdk files to out. Returns the count. */
+	public static int toSdb(String[] files, OutputStream out)
+			throws InvalidPuzzleError, ReadError, IOException {
+		SdbWriter writer = null;
+		Alphabet alphabet = null;
+		for (String file : files) {
+			SdkReader reader = new SdkReader(file);
+			Puzzle puzzle = reader.read();
+			if (writer == null) {
+				alphabet = reader.getAlphabet();
+				writer = new SdbWriter(out, puzzle.getGeometry(), alphabet);
+			} else if (!puzzle.getGeometry().equals(writer.getGeometry())
+					|| !sameSymbols(alphabet, reader.getAlphabet())) {
+				throw (new SdkReadError(file
+						+ " does not have the regions and values of "
+						+ files[0] + "."));
+			}
+			writer.write(puzzle);
+		}
+		if (writer != null) {
+			writer.flush();
+		}
+		return files.length;
+	}
+
+	/**
+	 * Write each puzzle of a .sdb file to directory as 1.sdk, 2.sdk and so
+	 * on. Returns the count.
+	 */
+	public static int toSdk(InputStream in, File directory)
+			throws IOException, SdkReadError {
+		SdbReader reader = new SdbReader(in);
+		int count = 0;
+		Puzzle puzzle;
+		while ((puzzle = reader.readPuzzle()) != null) {
+			count++;
+			Writer out = new FileWriter(new File(directory, count + ".sdk"));
+			try {
+				new SdkWriter(out).write(puzzle, reader.getAlphabet());
+			} finally {
+				out.close();
+			}
+		}
+		return count;
+	}
+
+	/** Check if two alphabets, either of which may be null, match. */
+	private static boolean sameSymbols(Alphabet first, Alphabet second) {
+		if (first == null || second == null) {
+			return first == second;
+		}
+		return Arrays.equals(first.getSymbols(), second.getSymbols());
+	}
+}
@@ -0,0 +1,190 @@
+package sudoku.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleFactory;
+import sudoku.model.PuzzleGeometry;
+
+/**
+ * Reads puzzles written by SdbWriter, one at a time, so files of any size
+ * can be streamed.
+ */
+public class SdbReader {
+
+	/** Get the region indices of boxes of the given height and width. */
+	private static int[][] boxRegions(int width, int height, int boxWidth)
+			throws SdkReadError {
+		if (height * boxWidth != width) {
+			throw (new SdkReadError(height + "x" + boxWidth
+					+ " boxes do not fit a " + width + "-puzzle."));
+		}
+		int[][] regions;
+		try {
+			regions = PuzzleFactory.makePuzzle(new int[width * width], height,
+					boxWidth).getGeometry().getRegions();
+		} catch (InvalidPuzzleError error) {
+			throw (new SdkReadError(error.getMessage()));
+		}
+		return regions;
+	}
+
+	/** Get the length of a string written by DataOutput.writeUTF. */
+	private static int utfLength(String string) {
+		int length = 2;
+		for (int i = 0; i < string.length(); i++) {
+			char letter = string.charAt(i);
+			if (letter >= 1 && letter <= 0x7f) {
+				length++;
+			} else if (letter <= 0x7ff) {
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Unpack the squares of one puzzle from the next bytes of a buffer, 0
+	 * meaning unknown.
+	 */
+	static int[] unpack(ByteBuffer in, int width) throws SdkReadError {
+		int bits = SdbWriter.bitsPerSquare(width);
+		int mask = (1 << bits) - 1;
+		int[] squares = new int[width * width];
+		long pending = 0;
+		int pendingBits = 0;
+		for (int i = 0; i < squares.length; i++) {
+			while (pendingBits < bits) {
+				pending = pending << 8 | (in.get() & 0xff);
+				pendingBits += 8;
+			}
+			pendingBits -= bits;
+			squares[i] = (int) (pending >>> pendingBits) & mask;
+			if (squares[i] > width) {
+				throw (new SdkReadError(squares[i] + " is not a value of a "
+						+ width + "-puzzle."));
+			}
+		}
+		return squares;
+	}
+
+	private Alphabet alphabet;
+	private byte[] buffer;
+	private PuzzleGeometry geometry;
+	/** Number of bytes before the first puzzle. */
+	private int headerLength;
+	private DataInputStream in;
+	private int size;
+	private int width;
+
+	/** Read the header of a .sdb file. */
+	public SdbReader(InputStream in) throws IOException, SdkReadError {
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		byte[] magic = new byte[SdbWriter.MAGIC.length];
+		try {
+			this.in.readFully(magic);
+			if (!Arrays.equals(magic, SdbWriter.MAGIC)) {
+				throw (new SdkReadError("This is not a .sdb file."));
+			}
+			width = this.in.readUnsignedShort();
+			if (width < 1 || width > SdbWriter.MAX_WIDTH) {
+				throw (new SdkReadError("A width of " + width
+						+ " is not supported."));
+			}
+			size = width * width;
+			int layout = this.in.readUnsignedByte();
+			headerLength = magic.length + 3;
+			int[][] regions;
+			if (layout == SdbWriter.BOX_LAYOUT) {
+				headerLength += 4;
+				int height = this.in.readUnsignedShort();
+				int boxWidth = this.in.readUnsignedShort();
+				regions = boxRegions(width, height, boxWidth);
+			} else if (layout == SdbWriter.REGION_LAYOUT) {
+				headerLength += size * 2;
+				regions = new int[width][width];
+				for (int[] region : regions) {
+					for (int i = 0; i < width; i++) {
+						region[i] = this.in.readUnsignedShort();
+					}
+				}
+				PuzzleFactory.makePuzzle(new int[size], regions);
+			} else {
+				throw (new SdkReadError("Unknown region layout " + layout
+						+ "."));
+			}
+			geometry = PuzzleGeometry.get(regions);
+			int count = this.in.readUnsignedByte();
+			headerLength++;
+			if (count > 0) {
+				String[] symbols = new String[count];
+				for (int i = 0; i < count; i++) {
+					symbols[i] = this.in.readUTF();
+					headerLength += utfLength(symbols[i]);
+				}
+				alphabet = new Alphabet(symbols);
+			}
+		} catch (EOFException error) {
+			throw (new SdkReadError("The header is cut short."));
+		} catch (InvalidPuzzleError error) {
+			throw (new SdkReadError(error.getMessage()));
+		}
+		buffer = new byte[getRecordLength()];
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/** Get the alphabet of the file, or null if it uses numbers. */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	public PuzzleGeometry getGeometry() {
+		return geometry;
+	}
+
+	/** Get the number of bytes before the first puzzle. */
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	/** Get the number of bytes taken by each puzzle. */
+	public int getRecordLength() {
+		return (size * SdbWriter.bitsPerSquare(width) + 7) / 8;
+	}
+
+	/**
+	 * Read the squares of the next puzzle, 0 meaning unknown. Returns null at
+	 * the end of the file.
+	 */
+	public int[] read() throws IOException, SdkReadError {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+		buffer[0] = (byte) first;
+		try {
+			in.readFully(buffer, 1, buffer.length - 1);
+		} catch (EOFException error) {
+			throw (new SdkReadError("The last puzzle is cut short."));
+		}
+		return unpack(ByteBuffer.wrap(buffer), width);
+	}
+
+	/** Read the next puzzle, or null at the end of the file. */
+	public Puzzle readPuzzle() throws IOException, SdkReadError {
+		int[] squares = read();
+		return squares == null ? null : new Puzzle(squares, geometry);
+	}
+}
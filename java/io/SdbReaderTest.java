@@ -0,0 +1,135 @@
+package sudoku.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import mapfile.ReadError;
+
+import org.junit.Test;
+
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+
+public class SdbReaderTest {
+
+	/** Write puzzles to a .sdb file in memory. */
+	private static byte[] write(Puzzle first, Alphabet alphabet,
+			int[]... squares) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SdbWriter writer = new SdbWriter(out, first.getGeometry(), alphabet);
+		writer.write(first);
+		for (int[] puzzle : squares) {
+			writer.write(puzzle);
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void badFiles() throws IOException, InvalidPuzzleError, ReadError {
+		try {
+			new SdbReader(new ByteArrayInputStream("squares: 1".getBytes()));
+			fail("That is not a .sdb file.");
+		} catch (SdkReadError error) {
+		}
+		byte[] bytes = write(new SdkReader("4.sdk").read(), null);
+		SdbReader reader = new SdbReader(new ByteArrayInputStream(Arrays
+				.copyOf(bytes, bytes.length - 1)));
+		try {
+			reader.read();
+			fail("The puzzle is cut short.");
+		} catch (SdkReadError error) {
+		}
+		bytes[bytes.length - 1] = (byte) 0xff;
+		reader = new SdbReader(new ByteArrayInputStream(bytes));
+		try {
+			reader.read();
+			fail("7 is not a value of a 4-puzzle.");
+		} catch (SdkReadError error) {
+		}
+		for (int width : new int[] { 0, SdbWriter.MAX_WIDTH + 1, 0xffff }) {
+			bytes[SdbWriter.MAGIC.length] = (byte) (width >>> 8);
+			bytes[SdbWriter.MAGIC.length + 1] = (byte) width;
+			try {
+				new SdbReader(new ByteArrayInputStream(bytes));
+				fail("A width of " + width + " is not supported.");
+			} catch (SdkReadError error) {
+			}
+		}
+		bytes = write(new SdkReader("4.sdk").read(), null);
+		bytes[SdbWriter.MAGIC.length + 3] = (byte) 0xff;
+		try {
+			new SdbReader(new ByteArrayInputStream(bytes));
+			fail("65282x2 boxes do not fit a 4-puzzle.");
+		} catch (SdkReadError error) {
+		}
+	}
+
+	@Test
+	public void roundTrip() throws IOException, InvalidPuzzleError,
+			ReadError {
+		for (String file : new String[] { "4.sdk", "6.sdk", "9.sdk",
+				"16.sdk", "25.sdk", "squiggly.sdk" }) {
+			SdkReader sdk = new SdkReader(file);
+			Puzzle puzzle = sdk.read();
+			int size = puzzle.getGeometry().getSize();
+			int[] full = new int[size];
+			for (int i = 0; i < size; i++) {
+				full[i] = i % puzzle.getGeometry().getWidth() + 1;
+			}
+			byte[] bytes = write(puzzle, sdk.getAlphabet(), full);
+			SdbReader reader = new SdbReader(new ByteArrayInputStream(bytes));
+			assertSame(file, puzzle.getGeometry(), reader.getGeometry());
+			Puzzle read = reader.readPuzzle();
+			assertArrayEquals(file, puzzle.getValues(), read.getValues());
+			assertSame(puzzle.getGeometry(), read.getGeometry());
+			assertArrayEquals(file, full, reader.read());
+			assertNull(reader.read());
+			if (sdk.getAlphabet() != null) {
+				assertArrayEquals(sdk.getAlphabet().getSymbols(), reader
+						.getAlphabet().getSymbols());
+			} else {
+				assertNull(reader.getAlphabet());
+			}
+		}
+	}
+
+	@Test
+	public void size() throws IOException, InvalidPuzzleError, ReadError {
+		Puzzle nine = new SdkReader("9.sdk").read();
+		assertEquals(41 * 2, write(nine, null, new int[81], new int[81]).length
+				- write(nine, null).length);
+		Puzzle big = new SdkReader("25.sdk").read();
+		assertEquals(391, write(big, null, new int[625]).length
+				- write(big, null).length);
+	}
+
+	@Test
+	public void sdkWriter() throws IOException, InvalidPuzzleError, ReadError {
+		for (String file : new String[] { "6.sdk", "25.sdk", "squiggly.sdk" }) {
+			SdkReader sdk = new SdkReader(file);
+			Puzzle puzzle = sdk.read();
+			File copy = File.createTempFile("sdbreadertest", ".sdk");
+			try {
+				FileWriter out = new FileWriter(copy);
+				new SdkWriter(out).write(puzzle, sdk.getAlphabet());
+				out.close();
+				Puzzle read = new SdkReader(copy).read();
+				assertSame(file, puzzle.getGeometry(), read.getGeometry());
+				assertArrayEquals(file, puzzle.getValues(), read.getValues());
+			} finally {
+				copy.delete();
+			}
+		}
+	}
+}
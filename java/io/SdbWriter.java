@@ -0,0 +1,125 @@
+package sudoku.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleGeometry;
+
+/**
+ * Writes puzzles in the binary .sdb format, one after another. The header
+ * gives the width, the region layout and the alphabet, then each puzzle is
+ * its squares packed with just enough bits for the values 0 to width, padded
+ * to a whole byte. A 9x9 puzzle takes 41 bytes.
+ */
+public class SdbWriter {
+
+	/** Layout code for boxes made from region dimensions. */
+	static final int BOX_LAYOUT = 0;
+	/** First bytes of every .sdb file. */
+	static final byte[] MAGIC = { 'S', 'D', 'B', 1 };
+	/** Widest puzzle held, so every square index fits in an unsigned short. */
+	static final int MAX_WIDTH = 256;
+	/** Layout code for region indices given square by square. */
+	static final int REGION_LAYOUT = 1;
+
+	/** Get the number of bits needed for the values 0 to width. */
+	static int bitsPerSquare(int width) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(width);
+	}
+
+	private int bits;
+	private byte[] buffer;
+	private PuzzleGeometry geometry;
+	private DataOutputStream out;
+	private int size;
+	private int width;
+
+	/**
+	 * Start a file of puzzles with the given geometry, written with the
+	 * alphabet's symbols, or numbers if it is null.
+	 */
+	public SdbWriter(OutputStream out, PuzzleGeometry geometry,
+			Alphabet alphabet) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.geometry = geometry;
+		width = geometry.getWidth();
+		if (width > MAX_WIDTH) {
+			throw (new IllegalArgumentException("A .sdb file holds puzzles"
+					+ " at most " + MAX_WIDTH + " wide, not " + width + "."));
+		}
+		size = geometry.getSize();
+		bits = bitsPerSquare(width);
+		buffer = new byte[(size * bits + 7) / 8];
+		this.out.write(MAGIC);
+		this.out.writeShort(width);
+		int[] box = geometry.getBox();
+		if (box != null) {
+			this.out.writeByte(BOX_LAYOUT);
+			this.out.writeShort(box[0]);
+			this.out.writeShort(box[1]);
+		} else {
+			this.out.writeByte(REGION_LAYOUT);
+			for (int[] region : geometry.getRegions()) {
+				for (int square : region) {
+					this.out.writeShort(square);
+				}
+			}
+		}
+		String[] symbols = alphabet == null ? new String[0] : alphabet
+				.getSymbols();
+		this.out.writeByte(symbols.length);
+		for (String symbol : symbols) {
+			this.out.writeUTF(symbol);
+		}
+	}
+
+	/** Write out everything buffered and close the stream. */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/** Write out everything buffered. */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public PuzzleGeometry getGeometry() {
+		return geometry;
+	}
+
+	/** Write the fixed squares of a puzzle. */
+	public void write(Puzzle puzzle) throws IOException {
+		write(puzzle.getValues());
+	}
+
+	/** Write a puzzle's squares, 0 meaning unknown. */
+	public void write(int[] squares) throws IOException {
+		if (squares.length != size) {
+			throw (new IllegalArgumentException("A " + width
+					+ "-puzzle has " + size + " squares, not "
+					+ squares.length + "."));
+		}
+		long pending = 0;
+		int pendingBits = 0;
+		int count = 0;
+		for (int square : squares) {
+			if (square < 0 || square > width) {
+				throw (new IllegalArgumentException(square
+						+ " is not a value of a " + width + "-puzzle."));
+			}
+			pending = pending << bits | square;
+			pendingBits += bits;
+			while (pendingBits >= 8) {
+				pendingBits -= 8;
+				buffer[count++] = (byte) (pending >>> pendingBits);
+			}
+		}
+		if (pendingBits > 0) {
+			buffer[count] = (byte) (pending << (8 - pendingBits));
+		}
+		out.write(buffer);
+	}
+}
@@ -3,12 +3,10 @@ package sudoku.io;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.PatternSyntaxException;
 
 import mapfile.MapfileReader;
 import mapfile.ReadError;
@@ -52,39 +50,87 @@ public class SdkReader {
 		return regions;
 	}
 
-	/** Load the squares. */
-	protected static List<Integer> loadSquares(String string) {
-		List<Character> charset = Arrays.asList(' ', '.', '0', '1', '2', '3',
-				'4', '5', '6', '7', '8', '9');
-		Set<Character> illegal = new HashSet<Character>();
-		for (char letter : string.toCharArray()) {
-			if (!charset.contains(letter)) {
-				illegal.add(letter);
+	/**
+	 * Load the squares in a single pass. Each number is a square and each '.'
+	 * is an unknown square; whitespace, the '|', '-' and '+' of the borders
+	 * and anything else separate them.
+	 */
+	protected static int[] loadSquares(CharSequence string) {
+		int[] squares = new int[string.length()];
+		int count = 0;
+		int value = -1;
+		for (int i = 0; i < string.length(); i++) {
+			char letter = string.charAt(i);
+			if (letter >= '0' && letter <= '9') {
+				value = (value < 0 ? 0 : value * 10) + letter - '0';
+				continue;
 			}
-		}
-		for (char letter : illegal) {
-			try {
-				string = string.replaceAll("" + letter, " ");
-			} catch (PatternSyntaxException error) {
-				string = string.replaceAll("\\" + letter, " ");
+			if (value >= 0) {
+				squares[count++] = value;
+				value = -1;
+			}
+			if (letter == '.') {
+				squares[count++] = 0;
 			}
 		}
-		string = string.replaceAll("\\|", " ");
-		List<Integer> squares = new LinkedList<Integer>();
-		for (String square : string.split("\\s*")) {
-			if (square.length() > 0) {
-				if (square.charAt(0) == ".".charAt(0)) {
-					squares.add(0);
-				} else {
-					squares.add(Integer.parseInt(square));
+		if (value >= 0) {
+			squares[count++] = value;
+		}
+		return Arrays.copyOf(squares, count);
+	}
+
+	/** Load the values, or return null if none are given. */
+	protected static Alphabet loadValues(String string) throws SdkReadError {
+		if (string == null || string.trim().length() == 0) {
+			return null;
+		}
+		return Alphabet.parse(string);
+	}
+
+	/**
+	 * Split a document held in memory into its keys and values, as
+	 * MapfileReader does for a file. A line that starts with a key and a
+	 * colon starts a value; an indented line continues it.
+	 */
+	static Map<String, String> parseDocument(CharSequence document) {
+		Map<String, String> dictionary = new LinkedHashMap<String, String>();
+		String key = null;
+		StringBuilder value = new StringBuilder();
+		int start = 0;
+		while (start < document.length()) {
+			int end = start;
+			while (end < document.length() && document.charAt(end) != '\n') {
+				end++;
+			}
+			String line = document.subSequence(start, end).toString();
+			start = end + 1;
+			int colon = line.indexOf(':');
+			if (line.length() > 0 && !Character.isWhitespace(line.charAt(0))
+					&& colon > 0) {
+				if (key != null) {
+					dictionary.put(key, value.toString());
 				}
+				key = line.substring(0, colon).trim();
+				value.setLength(0);
+				value.append(line.substring(colon + 1).trim());
+			} else if (key != null) {
+				value.append('\n').append(line.trim());
 			}
 		}
-		return squares;
+		if (key != null) {
+			dictionary.put(key, value.toString());
+		}
+		return dictionary;
 	}
 
+	/** Values declared by the last file read, if any. */
+	private Alphabet alphabet;
 	MapfileReader mapfileReader;
 
+	/** Make a reader for documents given to read(CharSequence). */
+	public SdkReader() {
+	}
+
 	public SdkReader(File file) throws FileNotFoundException {
 		mapfileReader = new MapfileReader(file);
 	}
@@ -93,15 +139,44 @@ public class SdkReader {
 		mapfileReader = new MapfileReader(fileName);
 	}
 
+	/**
+	 * Get the values declared by the file last read, or null if it uses
+	 * numbers.
+	 */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
 	/** Parse the file into a Puzzle instance. */
 	public Puzzle read() throws InvalidPuzzleError, ReadError {
-		Map<String, String> dictionary = mapfileReader.read();
-		List<Integer> squareList = loadSquares(dictionary.get("squares"));
-		int[] squares = new int[squareList.size()];
-		int index = 0;
-		for (int square : squareList) {
-			squares[index] = square;
-			index++;
+		return read(mapfileReader.read());
+	}
+
+	/** Parse a .sdk document held in memory into a Puzzle instance. */
+	public Puzzle read(CharSequence document) throws InvalidPuzzleError,
+			SdkReadError {
+		return read(parseDocument(document));
+	}
+
+	/** Make a Puzzle instance from the keys and values of a document. */
+	private Puzzle read(Map<String, String> dictionary)
+			throws InvalidPuzzleError, SdkReadError {
+		if (!dictionary.containsKey("squares")) {
+			throw (new SdkReadError("No squares are given."));
+		}
+		alphabet = loadValues(dictionary.get("values"));
+		int[] squares;
+		if (alphabet == null) {
+			squares = loadSquares(dictionary.get("squares"));
+		} else {
+			squares = alphabet.loadSquares(dictionary.get("squares"));
+		}
+		int width = (int) Math.sqrt(squares.length);
+		for (int square : squares) {
+			if (square < 0 || square > width) {
+				throw (new SdkReadError(square
+						+ " is not a value available for this puzzle."));
+			}
 		}
 		if (dictionary.containsKey("regions")) {
 			String regionDescription = dictionary.get("regions");
@@ -116,7 +191,7 @@ public class SdkReader {
 			List<List<Integer>> regionList = loadRegions(dictionary
 					.get("regions"));
 			int[][] regions = new int[regionList.size()][];
-			index = 0;
+			int index = 0;
 			for (List<Integer> region : regionList) {
 				int[] newRegion = new int[region.size()];
 				int squareIndex = 0;
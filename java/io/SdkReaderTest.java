@@ -40,14 +40,48 @@ public class SdkReaderTest {
 		}
 	}
 
+	@Test
+	public void loadValues() throws SdkReadError {
+		assertNull(SdkReader.loadValues(null));
+		Alphabet twelve = SdkReader.loadValues("1 2 3 4 5 6 7 8 9 a b c");
+		assertEquals(12, twelve.size());
+		assertArrayEquals(new int[] { 1, 0, 0, 11, 5, 12 }, twelve
+				.loadSquares("1 . . | b 5\n-------+\nc"));
+		assertArrayEquals(new int[] { 10, 12, 0 }, twelve.loadSquares("ac."));
+		assertEquals("b", twelve.format(11));
+		Alphabet decimal = SdkReader.loadValues("1 2 3 4 5 6 7 8 9 10 11 12");
+		assertArrayEquals(new int[] { 12, 0, 1, 10 }, decimal
+				.loadSquares("12 . | 1 10"));
+		try {
+			decimal.loadSquares("13");
+			fail("13 is not a value.");
+		} catch (SdkReadError error) {
+		}
+		StringBuilder symbols = new StringBuilder();
+		for (int i = 0; i < Alphabet.MAX_SYMBOLS; i++) {
+			symbols.append((char) ('0' + i)).append(' ');
+		}
+		assertEquals(64, SdkReader.loadValues(symbols.toString()).size());
+		try {
+			SdkReader.loadValues(symbols + "~");
+			fail("65 values are too many.");
+		} catch (SdkReadError error) {
+		}
+		try {
+			SdkReader.loadValues("a b a");
+			fail("a is given twice.");
+		} catch (SdkReadError error) {
+		}
+	}
+
 	@Test
 	public void loadSquares() {
 		String squares = "1 | . | .--+---+--2 | . | .--+---+--3 | . | .";
 		int[] wanted = { 1, 0, 0, 2, 0, 0, 3, 0, 0 };
-		List<Integer> result = SdkReader.loadSquares(squares);
-		assertEquals(wanted.length, result.size());
-		for (int i = 0; i < wanted.length; i++) {
-			assertEquals(wanted[i], result.get(i).intValue());
-		}
+		assertArrayEquals(wanted, SdkReader.loadSquares(squares));
+		assertArrayEquals(new int[] { 13, 10, 0, 7, 0, 14 }, SdkReader
+				.loadSquares("13 10  .  7 |\n  . 14"));
+		assertArrayEquals(new int[] { 0, 0, 5 }, SdkReader
+				.loadSquares("..|5"));
 	}
 }
@@ -0,0 +1,54 @@
+package sudoku.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleDumper;
+import sudoku.model.PuzzleGeometry;
+
+/** Writes a puzzle as a .sdk file that SdkReader reads back. */
+public class SdkWriter {
+
+	/** Column the squares start in, after the "squares: " key. */
+	private static final String INDENT = "         ";
+
+	private Writer out;
+
+	public SdkWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write the regions, the values if the alphabet is not null, and the
+	 * squares of a puzzle.
+	 */
+	public void write(Puzzle puzzle, Alphabet alphabet) throws IOException {
+		PuzzleGeometry geometry = puzzle.getGeometry();
+		int[] box = geometry.getBox();
+		if (box != null) {
+			out.write("regions: " + box[0] + " x " + box[1] + "\n");
+		} else {
+			int[][] regions = geometry.getRegions();
+			for (int i = 0; i < regions.length; i++) {
+				out.write(i == 0 ? "regions: " : INDENT);
+				for (int j = 0; j < regions[i].length; j++) {
+					out.write((j == 0 ? "" : " ") + regions[i][j]);
+				}
+				out.write(i < regions.length - 1 ? ",\n" : "\n");
+			}
+		}
+		String[] symbols = null;
+		if (alphabet != null) {
+			symbols = alphabet.getSymbols();
+			out.write("values:");
+			for (String symbol : symbols) {
+				out.write(" " + symbol);
+			}
+			out.write("\n");
+		}
+		String squares = new PuzzleDumper(puzzle, symbols).dump();
+		out.write("squares: " + squares.replace("\n", "\n" + INDENT) + "\n");
+		out.flush();
+	}
+}
@@ -0,0 +1,405 @@
+package sudoku.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import sudoku.model.Strategy;
+
+/**
+ * A long-running solver on a local TCP port, so clients pay for the JVM
+ * starting once rather than once per puzzle. Each request is a puzzle in the
+ * one-per-line format, and each response is its solution, or the line and
+ * the error after a tab, as BatchSolver writes them. A client may send many
+ * lines before reading; responses come back in order.
+ *
+ * Each connection has its own thread, which hands requests to a dispatcher.
+ * The dispatcher gathers the requests that arrive within a short window
+ * into a batch and solves the batch on a fixed pool. With a p99 latency
+ * target, the window is shrunk to leave room for the time batches take to
+ * solve.
+ */
+public class SolverServer {
+
+	/** Longest wait after a failed accept, in milliseconds. */
+	private static final long MAX_BACKOFF = 1000;
+	/** Most requests solved in one batch. */
+	public static final int MAX_BATCH = 256;
+	/** Number of recent latencies the p99 is taken over. */
+	private static final int SAMPLES = 1024;
+
+	/**
+	 * Serve on the port given by the first argument, or 7070, with the
+	 * number of solving threads given by the second, or all processors. A
+	 * third argument sets the p99 latency target in milliseconds.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+		int parallelism = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		SolverServer server = new SolverServer(port, parallelism,
+				Strategy.SEARCH);
+		if (args.length > 2) {
+			server.setLatencyTarget(Math.round(Double.parseDouble(args[2])
+					* 1e6));
+		}
+		server.start();
+		System.err.println("Listening on port " + server.getPort() + ".");
+	}
+
+	/** Time a batch stays open for more requests, in nanoseconds. */
+	private volatile long batchWindow = TimeUnit.MICROSECONDS.toNanos(200);
+	private Thread dispatcher;
+	/** Latencies of recent requests, in nanoseconds, as a ring buffer. */
+	private long[] latencies = new long[SAMPLES];
+	/** Index of the next latency to be written. */
+	private int latencyIndex;
+	/** Whether every slot of latencies has been written. */
+	private boolean latenciesFull;
+	/** Target p99 latency in nanoseconds, or 0 for none. */
+	private long latencyTarget;
+	/** Longest window allowed, as set by setBatchWindow. */
+	private long maxBatchWindow = batchWindow;
+	private int parallelism;
+	private int port;
+	private final BlockingQueue<Request> requests = new LinkedBlockingQueue<Request>();
+	private volatile boolean running;
+	private ServerSocket serverSocket;
+	/** Connections open, to be closed on stopping. */
+	private final Set<Socket> sockets = Collections
+			.synchronizedSet(new HashSet<Socket>());
+	private ExecutorService solvers;
+	private Strategy strategy;
+
+	/** Serve on a port of the loopback address, 0 for any free one. */
+	public SolverServer(int port, int parallelism, Strategy strategy) {
+		this.port = port;
+		this.parallelism = parallelism;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Accept connections until stopped, each on its own thread. After a
+	 * failure, such as running out of file descriptors, wait before trying
+	 * again, twice as long each time it fails in a row.
+	 */
+	private void accept() {
+		long backoff = 0;
+		while (running) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException error) {
+				if (!running) {
+					break;
+				}
+				System.err.println(error.getMessage());
+				backoff = Math.min(Math.max(backoff * 2, 10), MAX_BACKOFF);
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException interrupted) {
+					break;
+				}
+				continue;
+			}
+			backoff = 0;
+			sockets.add(socket);
+			Thread connection = new Thread(new Runnable() {
+				public void run() {
+					serve(socket);
+				}
+			}, "sudoku-connection");
+			connection.setDaemon(true);
+			connection.start();
+		}
+	}
+
+	/**
+	 * Gather requests into batches and hand them to the solvers until
+	 * stopped.
+	 */
+	private void dispatch() {
+		while (running) {
+			Request first;
+			try {
+				first = requests.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException error) {
+				break;
+			}
+			if (first == null) {
+				continue;
+			}
+			List<Request> batch = new ArrayList<Request>();
+			batch.add(first);
+			long deadline = first.arrival + batchWindow;
+			while (batch.size() < MAX_BATCH) {
+				Request next;
+				long wait = deadline - System.nanoTime();
+				try {
+					next = wait > 0 ? requests.poll(wait, TimeUnit.NANOSECONDS)
+							: requests.poll();
+				} catch (InterruptedException error) {
+					running = false;
+					break;
+				}
+				if (next == null) {
+					break;
+				}
+				batch.add(next);
+			}
+			submit(batch);
+		}
+		// Answer whatever was sent before stopping.
+		List<Request> rest = new ArrayList<Request>();
+		requests.drainTo(rest);
+		if (!rest.isEmpty()) {
+			submit(rest);
+		}
+	}
+
+	/** Get the current batch window in nanoseconds. */
+	public long getBatchWindow() {
+		return batchWindow;
+	}
+
+	/** Get the port served on, once started. */
+	public int getPort() {
+		return serverSocket == null ? port : serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Hand a request to the dispatcher, or, once stopping, answer it with an
+	 * error. Stopping waits for this, so every request queued is solved.
+	 */
+	private void queue(Request request) {
+		synchronized (requests) {
+			if (running) {
+				requests.add(request);
+				return;
+			}
+		}
+		request.response = request.line + "\tThe server is stopping.";
+		request.done.countDown();
+	}
+
+	/**
+	 * Note the latencies of a batch solved by end and, with a target, fit
+	 * the window in what the slowest requests leave of it, at most once
+	 * every 64 requests.
+	 */
+	private synchronized void record(List<Request> batch, long end,
+			long solveTime) {
+		boolean adjust = false;
+		for (Request request : batch) {
+			latencies[latencyIndex] = end - request.arrival;
+			latencyIndex = (latencyIndex + 1) % SAMPLES;
+			latenciesFull |= latencyIndex == 0;
+			adjust |= latencyIndex % 64 == 0;
+		}
+		if (latencyTarget <= 0 || !adjust) {
+			return;
+		}
+		long[] recent = Arrays.copyOf(latencies, latenciesFull ? SAMPLES
+				: latencyIndex);
+		Arrays.sort(recent);
+		long p99 = recent[recent.length * 99 / 100];
+		if (p99 > latencyTarget) {
+			batchWindow /= 2;
+		} else {
+			batchWindow = Math.min(maxBatchWindow, Math.max(batchWindow * 2,
+					1000));
+		}
+		batchWindow = Math.min(batchWindow, Math.max(0, latencyTarget
+				- solveTime));
+	}
+
+	/** Answer the requests of one connection until it is closed. */
+	private void serve(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), "US-ASCII"), 1 << 16);
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket
+					.getOutputStream(), "US-ASCII"), 1 << 16);
+			List<Request> pending = new ArrayList<Request>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				// Take every line already sent, so they are batched together.
+				do {
+					if (line.trim().length() > 0) {
+						Request request = new Request(line);
+						pending.add(request);
+						queue(request);
+					}
+				} while (pending.size() < MAX_BATCH && in.ready()
+						&& (line = in.readLine()) != null);
+				for (Request request : pending) {
+					request.done.await();
+					out.write(request.response);
+					out.write('\n');
+				}
+				out.flush();
+				pending.clear();
+			}
+		} catch (SocketException error) {
+			// The client went away.
+		} catch (IOException error) {
+			System.err.println(error.getMessage());
+		} catch (InterruptedException error) {
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (sockets) {
+				sockets.remove(socket);
+				sockets.notifyAll();
+			}
+			try {
+				socket.close();
+			} catch (IOException error) {
+			}
+		}
+	}
+
+	/**
+	 * Set the longest time a batch stays open for more requests. A latency
+	 * target may shrink the window below it.
+	 */
+	public synchronized void setBatchWindow(long nanos) {
+		maxBatchWindow = batchWindow = nanos;
+	}
+
+	/**
+	 * Aim to answer 99% of requests within the given time in nanoseconds, by
+	 * shrinking the batch window as needed, or 0 for no target.
+	 */
+	public synchronized void setLatencyTarget(long nanos) {
+		latencyTarget = nanos;
+	}
+
+	/**
+	 * Solve a batch of requests and wake their connections. Every request is
+	 * answered, with an error if solving it failed unexpectedly, so no
+	 * connection is left waiting.
+	 */
+	private void solve(List<Request> batch) {
+		long start = System.nanoTime();
+		try {
+			for (Request request : batch) {
+				try {
+					request.response = BatchSolver.solveLine(request.line,
+							strategy);
+				} catch (RuntimeException error) {
+					request.response = request.line + "\t" + error;
+				}
+			}
+		} finally {
+			for (Request request : batch) {
+				if (request.response == null) {
+					request.response = request.line
+							+ "\tThe puzzle could not be solved.";
+				}
+				request.done.countDown();
+			}
+		}
+		long end = System.nanoTime();
+		record(batch, end, end - start);
+	}
+
+	/** Split a batch between the solving threads. */
+	private void submit(List<Request> batch) {
+		int slice = (batch.size() + parallelism - 1) / parallelism;
+		for (int i = 0; i < batch.size(); i += slice) {
+			final List<Request> part = batch.subList(i, Math.min(i + slice,
+					batch.size()));
+			solvers.execute(new Runnable() {
+				public void run() {
+					solve(part);
+				}
+			});
+		}
+	}
+
+	/** Start listening and solving. */
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress
+				.getLoopbackAddress());
+		solvers = Executors.newFixedThreadPool(parallelism);
+		running = true;
+		dispatcher = new Thread(new Runnable() {
+			public void run() {
+				dispatch();
+			}
+		}, "sudoku-dispatcher");
+		dispatcher.start();
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		}, "sudoku-acceptor");
+		acceptor.start();
+	}
+
+	/**
+	 * Stop accepting connections, finish the requests already received and
+	 * close the connections once their replies are written. Lines read after
+	 * stopping are answered with an error.
+	 */
+	public void stop() throws IOException, InterruptedException {
+		synchronized (requests) {
+			running = false;
+		}
+		serverSocket.close();
+		dispatcher.join();
+		solvers.shutdown();
+		solvers.awaitTermination(1, TimeUnit.MINUTES);
+		synchronized (sockets) {
+			for (Socket socket : sockets) {
+				try {
+					socket.shutdownInput();
+				} catch (IOException error) {
+					// The client went away.
+				}
+			}
+			// Each connection closes itself once it has no more to read.
+			long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+			long wait;
+			while (!sockets.isEmpty()
+					&& (wait = end - System.nanoTime()) > 0) {
+				TimeUnit.NANOSECONDS.timedWait(sockets, wait);
+			}
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+	/** A puzzle waiting for its solution. */
+	private static class Request {
+		final long arrival = System.nanoTime();
+		final CountDownLatch done = new CountDownLatch(1);
+		final String line;
+		/** The solution, set before done is counted down. */
+		String response;
+
+		Request(String line) {
+			this.line = line;
+		}
+	}
+}
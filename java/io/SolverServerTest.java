@@ -0,0 +1,91 @@
+package sudoku.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sudoku.model.Strategy;
+
+public class SolverServerTest {
+
+	private static final String ESCARGOT = "1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3..";
+	private static final String ESCARGOT_SOLVED = "162857493534129678789643521475312986913586742628794135356478219241935867897261354";
+	private static final String FOUR = "3..12......21..3";
+	private static final String FOUR_SOLVED = "3421213443121243";
+
+	private SolverServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new SolverServer(0, 2, Strategy.SEARCH);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException, InterruptedException {
+		server.stop();
+	}
+
+	@Test
+	public void load() throws IOException, InterruptedException {
+		server.setLatencyTarget(TimeUnit.MILLISECONDS.toNanos(50));
+		LoadGenerator.Report report = new LoadGenerator("localhost", server
+				.getPort()).run(Arrays.asList(FOUR, ESCARGOT, "11.."), 3, 100,
+				4);
+		assertEquals(300, report.getCount());
+		assertEquals(100, report.getErrors());
+		assertTrue(report.percentile(0.5) <= report.percentile(0.99));
+	}
+
+	@Test
+	public void pipelined() throws IOException {
+		Socket socket = new Socket("localhost", server.getPort());
+		OutputStream out = socket.getOutputStream();
+		out.write((FOUR + "\n\n" + ESCARGOT + "\n11..\n" + FOUR + "\n")
+				.getBytes("US-ASCII"));
+		out.flush();
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket
+				.getInputStream(), "US-ASCII"));
+		assertEquals(FOUR_SOLVED, in.readLine());
+		assertEquals(ESCARGOT_SOLVED, in.readLine());
+		assertTrue(in.readLine().startsWith("11..\t"));
+		assertEquals(FOUR_SOLVED, in.readLine());
+		socket.close();
+	}
+
+	@Test
+	public void stopAnswersPending() throws IOException, InterruptedException {
+		Socket socket = new Socket("localhost", server.getPort());
+		OutputStream out = socket.getOutputStream();
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			lines.append(ESCARGOT).append('\n');
+		}
+		out.write(lines.toString().getBytes("US-ASCII"));
+		out.flush();
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket
+				.getInputStream(), "US-ASCII"));
+		assertEquals(ESCARGOT_SOLVED, in.readLine());
+		server.stop();
+		int count = 1;
+		String line;
+		while ((line = in.readLine()) != null) {
+			assertTrue(line.equals(ESCARGOT_SOLVED)
+					|| line.startsWith(ESCARGOT + "\t"));
+			count++;
+		}
+		assertEquals(200, count);
+		socket.close();
+	}
+}
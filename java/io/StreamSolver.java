@@ -0,0 +1,150 @@
+package sudoku.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import sudoku.model.InconsistentPuzzleError;
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleDumper;
+import sudoku.model.Strategy;
+
+/**
+ * Solves a stream of .sdk documents, such as a pipe, one after another. A
+ * document ends at a separator line or the end of the stream, and is solved
+ * and written out as soon as it ends, so a long-lived process can serve a
+ * steady stream of puzzles. Solutions are separated by blank lines.
+ */
+public class StreamSolver {
+
+	/** Separator used when none is given: a blank line. */
+	public static final String BLANK = "";
+
+	/** Number of documents that could not be solved. */
+	private long failures;
+	/** Line that ends a document, compared without surrounding whitespace. */
+	private String separator;
+	private Strategy strategy;
+	/** Whether a solution has been written to the current output. */
+	private boolean written;
+
+	public StreamSolver(String separator, Strategy strategy) {
+		this.separator = separator.trim();
+		this.strategy = strategy;
+	}
+
+	/** Count the documents that could not be solved. */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Solve every document read from the channel, writing the solutions to
+	 * out and flushing after each, and describing those that cannot be solved
+	 * on errors. Returns the number of documents.
+	 */
+	public long solve(ReadableByteChannel in, Appendable out,
+			Appendable errors) throws IOException {
+		CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+		CharBuffer chars = CharBuffer.allocate(1 << 16);
+		StringBuilder document = new StringBuilder();
+		written = false;
+		int lineStart = 0;
+		long count = 0;
+		boolean end = false;
+		while (!end) {
+			end = in.read(bytes) < 0;
+			bytes.flip();
+			decoder.decode(bytes, chars, end);
+			if (end) {
+				decoder.flush(chars);
+			}
+			bytes.compact();
+			chars.flip();
+			while (chars.hasRemaining()) {
+				char letter = chars.get();
+				document.append(letter);
+				if (letter != '\n') {
+					continue;
+				}
+				if (isSeparator(document, lineStart, document.length() - 1)) {
+					document.setLength(lineStart);
+					count += solveDocument(document, count, out, errors);
+					document.setLength(0);
+				}
+				lineStart = document.length();
+			}
+			chars.clear();
+		}
+		if (lineStart < document.length()
+				&& isSeparator(document, lineStart, document.length())) {
+			document.setLength(lineStart);
+		}
+		return count + solveDocument(document, count, out, errors);
+	}
+
+	/** Check if part of the document is a separator line. */
+	private boolean isSeparator(CharSequence document, int start, int end) {
+		while (start < end && Character.isWhitespace(document.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(document.charAt(end - 1))) {
+			end--;
+		}
+		return end - start == separator.length()
+				&& separator.contentEquals(document.subSequence(start, end));
+	}
+
+	/**
+	 * Solve a document and write out its solution, unless it is blank.
+	 * Returns the number of documents solved or failed, 0 or 1.
+	 */
+	private int solveDocument(CharSequence document, long index,
+			Appendable out, Appendable errors) throws IOException {
+		if (document.toString().trim().length() == 0) {
+			return 0;
+		}
+		SdkReader reader = new SdkReader();
+		try {
+			Puzzle puzzle = reader.read(document);
+			puzzle.solve(strategy);
+			Alphabet alphabet = reader.getAlphabet();
+			if (written) {
+				out.append('\n');
+			}
+			written = true;
+			new PuzzleDumper(puzzle, alphabet == null ? null : alphabet
+					.getSymbols()).dump(out);
+			out.append('\n');
+		} catch (SdkReadError error) {
+			fail(index, error.getMessage(), errors);
+		} catch (InvalidPuzzleError error) {
+			fail(index, error.getMessage(), errors);
+		} catch (InconsistentPuzzleError error) {
+			fail(index, "The puzzle is not consistent.", errors);
+		}
+		if (out instanceof Flushable) {
+			((Flushable) out).flush();
+		}
+		return 1;
+	}
+
+	/** Describe a document that could not be solved. */
+	private void fail(long index, String message, Appendable errors)
+			throws IOException {
+		failures++;
+		errors.append("Puzzle " + (index + 1) + ": " + message + "\n");
+		if (errors instanceof Flushable) {
+			((Flushable) errors).flush();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package sudoku.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import mapfile.ReadError;
+
+import org.junit.Test;
+
+import sudoku.model.InconsistentPuzzleError;
+import sudoku.model.InvalidPuzzleError;
+import sudoku.model.Puzzle;
+import sudoku.model.PuzzleDumper;
+import sudoku.model.Strategy;
+
+public class StreamSolverTest {
+
+	private static final String FOUR = "squares: 3 .|. 1\n"
+			+ "         2 .|. .\n" + "         ---+---\n"
+			+ "         . .|. 2\n" + "         1 .|. 3\n";
+
+	/** Solve a stream, returning the solutions and then the errors. */
+	private static String[] solve(StreamSolver solver, String input)
+			throws IOException {
+		StringBuilder out = new StringBuilder();
+		StringBuilder errors = new StringBuilder();
+		long count = solver.solve(Channels.newChannel(new ByteArrayInputStream(
+				input.getBytes("UTF-8"))), out, errors);
+		return new String[] { out.toString(), errors.toString(),
+				Long.toString(count) };
+	}
+
+	/** Get the solution of a .sdk file as StreamSolver writes it. */
+	private static String solution(String file) throws FileNotFoundException,
+			InvalidPuzzleError, ReadError, InconsistentPuzzleError {
+		SdkReader reader = new SdkReader(file);
+		Puzzle puzzle = reader.read();
+		puzzle.solve();
+		Alphabet alphabet = reader.getAlphabet();
+		return new PuzzleDumper(puzzle, alphabet == null ? null : alphabet
+				.getSymbols()).dump()
+				+ "\n";
+	}
+
+	@Test
+	public void separators() throws IOException, InvalidPuzzleError,
+			ReadError, InconsistentPuzzleError {
+		String four = solution("4.sdk");
+		StreamSolver solver = new StreamSolver(StreamSolver.BLANK,
+				Strategy.PROPAGATE);
+		String[] result = solve(solver, "\n" + FOUR + "\n\n" + FOUR + "\r\n"
+				+ "squares: 1 1 . .\n\n" + FOUR);
+		assertEquals(four + "\n" + four + "\n" + four, result[0]);
+		assertEquals("4", result[2]);
+		assertEquals(1, solver.getFailures());
+		assertEquals("Puzzle 3:", result[1].substring(0, 9));
+		solver = new StreamSolver("%%", Strategy.SEARCH);
+		result = solve(solver, FOUR + " %% \n" + FOUR + "%%");
+		assertEquals(four + "\n" + four, result[0]);
+		assertEquals("2", result[2]);
+		assertEquals(0, solver.getFailures());
+	}
+
+	@Test
+	public void valueOutOfRange() throws IOException, InvalidPuzzleError,
+			ReadError, InconsistentPuzzleError {
+		StreamSolver solver = new StreamSolver(StreamSolver.BLANK,
+				Strategy.SEARCH);
+		String[] result = solve(solver, FOUR.replace('3', '5') + "\n" + FOUR);
+		assertEquals(solution("4.sdk"), result[0]);
+		assertEquals("2", result[2]);
+		assertEquals(1, solver.getFailures());
+		assertEquals("Puzzle 1: 5 is not a value available for this puzzle.\n",
+				result[1]);
+	}
+}
@@ -0,0 +1,470 @@
+package sudoku.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A puzzle put into a standard orientation and labelling, so that puzzles
+ * that differ only by relabelling values, transposing, or reordering bands,
+ * stacks, and the rows and columns within them all get the same form. Forms
+ * are equal when their geometries and values are, which makes them usable as
+ * cache keys; each also remembers how to carry a grid between the canonical
+ * orientation and the puzzle's own.
+ * <p>
+ * The form is the least of the puzzle's isomorphs, compared first by where
+ * the clues are, row by row with blanks before clues, then by the relabelled
+ * values. Columns are tried exhaustively, up to MAX_COLUMN_ORDERS orders;
+ * rows are sorted. Geometries with more column orders than that keep their
+ * columns, and irregular geometries are only relabelled. Highly symmetric
+ * puzzles may stop at MAX_ROW_ORDERS. In those cases isomorphic puzzles may
+ * get different forms, but a form always maps back correctly.
+ */
+public class CanonicalForm {
+
+	/** Most column orders tried; with more, columns are left alone. */
+	public static final int MAX_COLUMN_ORDERS = 100000;
+	/** Most full row orders compared by value. */
+	public static final int MAX_ROW_ORDERS = 100000;
+
+	/** Find the form of a puzzle, from its fixed squares. */
+	public static CanonicalForm of(Puzzle puzzle) {
+		return of(puzzle.getValues(), puzzle.getGeometry());
+	}
+
+	/** Find the form of some values, 0 meaning unknown. */
+	public static CanonicalForm of(int[] values, PuzzleGeometry geometry) {
+		int width = geometry.getWidth();
+		int[] box = geometry.getBox();
+		if (box == null || width >= Long.SIZE) {
+			int[] source = new int[values.length];
+			for (int i = 0; i < source.length; i++) {
+				source[i] = i;
+			}
+			return new CanonicalForm(geometry, values, source);
+		}
+		return new Search(values, width, box[0], box[1]).run(geometry);
+	}
+
+	/** Get every ordering of 0 to n - 1. */
+	private static List<int[]> permutations(int n) {
+		List<int[]> result = new ArrayList<int[]>();
+		permute(new int[n], new boolean[n], 0, result);
+		return result;
+	}
+
+	private static void permute(int[] order, boolean[] used, int slot,
+			List<int[]> result) {
+		if (slot == order.length) {
+			result.add(order.clone());
+			return;
+		}
+		for (int i = 0; i < order.length; i++) {
+			if (!used[i]) {
+				used[i] = true;
+				order[slot] = i;
+				permute(order, used, slot + 1, result);
+				used[i] = false;
+			}
+		}
+	}
+
+	private PuzzleGeometry geometry;
+	private int hash;
+	/** Canonical label of each value, and the value of each label. */
+	private int[] label, unlabel;
+	/** Square of the puzzle that each canonical square comes from. */
+	private int[] source;
+	/** Values in canonical form. */
+	private int[] values;
+
+	/**
+	 * Make the form taking each square from source. Values are labelled in
+	 * order of first appearance, then any left over in increasing order.
+	 */
+	private CanonicalForm(PuzzleGeometry geometry, int[] original,
+			int[] source) {
+		this.geometry = geometry;
+		this.source = source;
+		int width = geometry.getWidth();
+		label = new int[width + 1];
+		unlabel = new int[width + 1];
+		int next = 0;
+		for (int i = 0; i < source.length; i++) {
+			int value = original[source[i]];
+			if (value != 0 && label[value] == 0) {
+				next++;
+				label[value] = next;
+				unlabel[next] = value;
+			}
+		}
+		for (int value = 1; value <= width; value++) {
+			if (label[value] == 0) {
+				next++;
+				label[value] = next;
+				unlabel[next] = value;
+			}
+		}
+		values = toCanonical(original);
+		hash = 31 * geometry.hashCode() + Arrays.hashCode(values);
+	}
+
+	public boolean equals(Object that) {
+		return that instanceof CanonicalForm
+				&& geometry.equals(((CanonicalForm) that).geometry)
+				&& hash == ((CanonicalForm) that).hash
+				&& Arrays.equals(values, ((CanonicalForm) that).values);
+	}
+
+	/** Carry a grid in the canonical orientation back to the puzzle's. */
+	public int[] fromCanonical(int[] canonical) {
+		int[] result = new int[canonical.length];
+		for (int i = 0; i < canonical.length; i++) {
+			result[source[i]] = unlabel[canonical[i]];
+		}
+		return result;
+	}
+
+	public PuzzleGeometry getGeometry() {
+		return geometry;
+	}
+
+	/** Get the values in canonical form; the array must not be modified. */
+	public int[] getValues() {
+		return values;
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	/** Carry a grid in the puzzle's orientation to the canonical one. */
+	public int[] toCanonical(int[] original) {
+		int[] result = new int[original.length];
+		for (int i = 0; i < original.length; i++) {
+			result[i] = label[original[source[i]]];
+		}
+		return result;
+	}
+
+	/** The search for the least isomorph of a puzzle with boxes. */
+	private static class Search {
+		private int bandHeight, bands, stackWidth, stacks, width;
+		private int[] values;
+
+		/** Least sequence of row clue masks found. */
+		private long[] bestMasks;
+		/** Column orders, transposed or not, that give the least masks. */
+		private List<int[]> ties = new ArrayList<int[]>();
+
+		/** Least relabelled values found, and where they come from. */
+		private int[] best, bestSource;
+		/** Number of times the best has been replaced. */
+		private int improvements;
+		/** Number of full row orders compared. */
+		private int leaves;
+
+		// State of the row search for one column order.
+		private boolean[] bandUsed, rowUsed;
+		private int[] bandOf, columnSource, labelOf, labelled, out, rowSource;
+		private int[] bandOrder;
+		private long[] masks, sequence;
+		private long[][] sortedBands;
+		/** Masks of each row over the stacks chosen so far, by slot. */
+		private long[][] prefixes;
+		/** Mask of each row in each stack, by order of the stack's columns. */
+		private long[][][] stackMasks;
+		private boolean[] stackUsed;
+		private boolean transposed;
+		private int labels;
+
+		Search(int[] values, int width, int bandHeight, int stackWidth) {
+			this.values = values;
+			this.width = width;
+			this.bandHeight = bandHeight;
+			this.stackWidth = stackWidth;
+			bands = width / bandHeight;
+			stacks = width / stackWidth;
+			masks = new long[width];
+			sequence = new long[width];
+			bandOrder = new int[bands];
+			sortedBands = new long[bands][bandHeight];
+		}
+
+		/** Get the value in a row and column, transposed if need be. */
+		private int at(int row, int column) {
+			return transposed ? values[column * width + row] : values[row
+					* width + column];
+		}
+
+		/** Check if the sorted masks of a band are those wanted at slot. */
+		private boolean bandMatches(int band, int slot) {
+			for (int k = 0; k < bandHeight; k++) {
+				if (sortedBands[band][k] != bestMasks[slot + k]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Choose the stack and column order for each stack slot from slot on,
+		 * and consider each full column order. The least row mask is the
+		 * first of the sequence, so a choice is dropped once no row can start
+		 * as low as the best sequence does.
+		 */
+		private void chooseStacks(int slot, List<int[]> innerOrders) {
+			if (slot == stacks) {
+				System.arraycopy(prefixes[stacks], 0, masks, 0, width);
+				considerColumns();
+				return;
+			}
+			int shift = (stacks - slot - 1) * stackWidth;
+			for (int stack = 0; stack < stacks; stack++) {
+				if (stackUsed[stack]) {
+					continue;
+				}
+				stackUsed[stack] = true;
+				for (int i = 0; i < innerOrders.size(); i++) {
+					long least = Long.MAX_VALUE;
+					for (int row = 0; row < width; row++) {
+						long prefix = prefixes[slot][row] << stackWidth
+								| stackMasks[row][stack][i];
+						prefixes[slot + 1][row] = prefix;
+						least = Math.min(least, prefix);
+					}
+					if (bestMasks != null && least > bestMasks[0] >>> shift) {
+						continue;
+					}
+					int[] order = innerOrders.get(i);
+					for (int k = 0; k < stackWidth; k++) {
+						columnSource[slot * stackWidth + k] = stack * stackWidth
+								+ order[k];
+					}
+					chooseStacks(slot + 1, innerOrders);
+				}
+				stackUsed[stack] = false;
+			}
+		}
+
+		/** Compare two bands by their sorted masks. */
+		private int compareBands(int a, int b) {
+			for (int k = 0; k < bandHeight; k++) {
+				if (sortedBands[a][k] != sortedBands[b][k]) {
+					return sortedBands[a][k] < sortedBands[b][k] ? -1 : 1;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Work out the least sequence of row masks under the current column
+		 * order, and keep the order if it is as good as the best so far.
+		 */
+		private void considerColumns() {
+			sortMasks();
+			int comparison = bestMasks == null ? -1 : 0;
+			for (int i = 0; i < width && comparison == 0; i++) {
+				if (sequence[i] != bestMasks[i]) {
+					comparison = sequence[i] < bestMasks[i] ? -1 : 1;
+				}
+			}
+			if (comparison < 0) {
+				bestMasks = sequence.clone();
+				ties.clear();
+			}
+			if (comparison <= 0) {
+				int[] tie = Arrays.copyOf(columnSource, width + 1);
+				tie[width] = transposed ? 1 : 0;
+				ties.add(tie);
+			}
+		}
+
+		/**
+		 * Work out the clue mask of each row under the current column order,
+		 * with the first column as the highest bit and clues as ones.
+		 */
+		private void computeMasks() {
+			for (int row = 0; row < width; row++) {
+				long mask = 0;
+				for (int column = 0; column < width; column++) {
+					mask = mask << 1
+							| (at(row, columnSource[column]) != 0 ? 1 : 0);
+				}
+				masks[row] = mask;
+			}
+		}
+
+		/**
+		 * Work out the masks of each row within each stack, for every order
+		 * of the columns in the stack, so a whole row mask takes one lookup
+		 * per stack.
+		 */
+		private void computeStackMasks(List<int[]> innerOrders) {
+			for (int row = 0; row < width; row++) {
+				for (int stack = 0; stack < stacks; stack++) {
+					for (int i = 0; i < innerOrders.size(); i++) {
+						int[] order = innerOrders.get(i);
+						long mask = 0;
+						for (int k = 0; k < stackWidth; k++) {
+							mask = mask << 1
+									| (at(row, stack * stackWidth + order[k]) != 0 ? 1
+											: 0);
+						}
+						stackMasks[row][stack][i] = mask;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Sort the masks of each band, then the bands, into the least
+		 * sequence the rows can be put in.
+		 */
+		private void sortMasks() {
+			for (int band = 0; band < bands; band++) {
+				for (int k = 0; k < bandHeight; k++) {
+					sortedBands[band][k] = masks[band * bandHeight + k];
+				}
+				Arrays.sort(sortedBands[band]);
+				int slot = band;
+				while (slot > 0 && compareBands(band, bandOrder[slot - 1]) < 0) {
+					bandOrder[slot] = bandOrder[slot - 1];
+					slot--;
+				}
+				bandOrder[slot] = band;
+			}
+			for (int i = 0; i < width; i++) {
+				sequence[i] = sortedBands[bandOrder[i / bandHeight]][i
+						% bandHeight];
+			}
+		}
+
+		/**
+		 * Try the rows of a band that have the wanted mask at slot. Returns
+		 * whether the rows before slot still beat the best, which stops
+		 * being so once the best is replaced.
+		 */
+		private boolean placeRow(int slot, int band, boolean better) {
+			for (int k = 0; k < bandHeight; k++) {
+				int row = band * bandHeight + k;
+				if (rowUsed[row] || masks[row] != bestMasks[slot]) {
+					continue;
+				}
+				int mark = labels;
+				int comparison = better || best == null ? -1 : 0;
+				for (int column = 0; column < width; column++) {
+					int value = at(row, columnSource[column]);
+					if (value != 0 && labelOf[value] == 0) {
+						labels++;
+						labelOf[value] = labels;
+						labelled[labels] = value;
+					}
+					int cell = slot * width + column;
+					out[cell] = value == 0 ? 0 : labelOf[value];
+					if (comparison == 0 && out[cell] != best[cell]) {
+						comparison = out[cell] < best[cell] ? -1 : 1;
+					}
+				}
+				if (comparison <= 0) {
+					int improved = improvements;
+					rowUsed[row] = true;
+					rowSource[slot] = row;
+					searchRows(slot + 1, comparison < 0);
+					rowUsed[row] = false;
+					if (improvements != improved) {
+						better = false;
+					}
+				}
+				while (labels > mark) {
+					labelOf[labelled[labels]] = 0;
+					labels--;
+				}
+			}
+			return better;
+		}
+
+		/** Find the least form, trying every column order if there are few. */
+		CanonicalForm run(PuzzleGeometry geometry) {
+			List<int[]> innerOrders = permutations(stackWidth);
+			double count = permutations(stacks).size()
+					* Math.pow(innerOrders.size(), stacks)
+					* (bandHeight == stackWidth ? 2 : 1);
+			columnSource = new int[width];
+			if (count > MAX_COLUMN_ORDERS) {
+				for (int column = 0; column < width; column++) {
+					columnSource[column] = column;
+				}
+				computeMasks();
+				considerColumns();
+			} else {
+				stackMasks = new long[width][stacks][innerOrders.size()];
+				prefixes = new long[stacks + 1][width];
+				stackUsed = new boolean[stacks];
+				for (int flip = 0; flip < (bandHeight == stackWidth ? 2 : 1); flip++) {
+					transposed = flip == 1;
+					computeStackMasks(innerOrders);
+					chooseStacks(0, innerOrders);
+				}
+			}
+			bandUsed = new boolean[bands];
+			rowUsed = new boolean[width];
+			bandOf = new int[bands];
+			rowSource = new int[width];
+			labelOf = new int[width + 1];
+			labelled = new int[width + 1];
+			out = new int[values.length];
+			for (int[] tie : ties) {
+				columnSource = Arrays.copyOf(tie, width);
+				transposed = tie[width] == 1;
+				computeMasks();
+				sortMasks();
+				searchRows(0, false);
+				if (leaves >= MAX_ROW_ORDERS) {
+					break;
+				}
+			}
+			return new CanonicalForm(geometry, values, bestSource);
+		}
+
+		/**
+		 * Order the rows from slot on, keeping to the least masks, and keep
+		 * the order if its values are the least so far. better is set once
+		 * the rows placed already beat the best.
+		 */
+		private void searchRows(int slot, boolean better) {
+			if (leaves >= MAX_ROW_ORDERS) {
+				return;
+			}
+			if (slot == width) {
+				leaves++;
+				if (best == null || better) {
+					improvements++;
+					best = out.clone();
+					bestSource = new int[values.length];
+					for (int row = 0; row < width; row++) {
+						for (int column = 0; column < width; column++) {
+							bestSource[row * width + column] = transposed ? columnSource[column]
+									* width + rowSource[row]
+									: rowSource[row] * width
+											+ columnSource[column];
+						}
+					}
+				}
+				return;
+			}
+			if (slot % bandHeight != 0) {
+				placeRow(slot, bandOf[slot / bandHeight], better);
+				return;
+			}
+			for (int band = 0; band < bands; band++) {
+				if (!bandUsed[band] && bandMatches(band, slot)) {
+					bandUsed[band] = true;
+					bandOf[slot / bandHeight] = band;
+					better = placeRow(slot, band, better);
+					bandUsed[band] = false;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CanonicalFormTest {
+
+	static final int[] NINE = { 0, 0, 0, 2, 6, 9, 0, 0, 0, 8, 0, 0, 5, 0, 0,
+			0, 2, 0, 0, 0, 7, 0, 1, 0, 6, 0, 0, 0, 0, 6, 0, 0, 5, 0, 0, 0, 5,
+			4, 0, 0, 0, 0, 0, 9, 1, 0, 0, 0, 3, 0, 0, 2, 0, 0, 0, 0, 2, 0, 9,
+			0, 3, 0, 0, 0, 7, 0, 0, 0, 2, 0, 0, 4, 0, 0, 0, 4, 5, 6, 0, 0, 0 };
+	static final int[] SIX = { 6, 3, 0, 1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 1, 0,
+			0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0, 6, 0, 0, 0, 0, 1, 0, 4, 5 };
+
+	/** Shuffle the order of part of an array. */
+	private static void shuffle(int[] order, int from, int to, Random random) {
+		for (int i = to - 1; i > from; i--) {
+			int j = from + random.nextInt(i - from + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+	}
+
+	/**
+	 * Make a random isomorph of a puzzle with boxes bandHeight tall and
+	 * stackWidth wide.
+	 */
+	static int[] isomorph(int[] values, int bandHeight, int stackWidth,
+			Random random) {
+		int width = (int) Math.sqrt(values.length);
+		int[] rows = order(width, bandHeight, random);
+		int[] columns = order(width, stackWidth, random);
+		int[] labels = new int[width + 1];
+		for (int i = 1; i <= width; i++) {
+			labels[i] = i;
+		}
+		shuffle(labels, 1, width + 1, random);
+		boolean transpose = bandHeight == stackWidth && random.nextBoolean();
+		int[] result = new int[values.length];
+		for (int row = 0; row < width; row++) {
+			for (int column = 0; column < width; column++) {
+				int value = transpose ? values[columns[column] * width
+						+ rows[row]] : values[rows[row] * width
+						+ columns[column]];
+				result[row * width + column] = labels[value];
+			}
+		}
+		return result;
+	}
+
+	/** Shuffle the groups of an order, then the order within each group. */
+	private static int[] order(int width, int group, Random random) {
+		int[] groups = new int[width / group];
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = i;
+		}
+		shuffle(groups, 0, groups.length, random);
+		int[] order = new int[width];
+		for (int i = 0; i < width; i++) {
+			order[i] = groups[i / group] * group + i % group;
+		}
+		for (int i = 0; i < width; i += group) {
+			shuffle(order, i, i + group, random);
+		}
+		return order;
+	}
+
+	@Test
+	public void irregular() {
+		PuzzleGeometry geometry = PuzzleGeneratorTest.SQUIGGLY;
+		PuzzleGenerator generator = new PuzzleGenerator(geometry,
+				Symmetry.NONE, 1);
+		int[] values = generator.generate(new Random(5));
+		generator.shutdown();
+		int[] relabelled = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			relabelled[i] = values[i] == 0 ? 0 : 10 - values[i];
+		}
+		CanonicalForm form = CanonicalForm.of(values, geometry);
+		assertEquals(form, CanonicalForm.of(relabelled, geometry));
+		assertArrayEquals(values, form.fromCanonical(form.getValues()));
+	}
+
+	@Test
+	public void isomorphs() throws InvalidPuzzleError {
+		Random random = new Random(11);
+		int[][] puzzles = { NINE, SIX };
+		int[][] boxes = { { 3, 3 }, { 2, 3 } };
+		for (int p = 0; p < puzzles.length; p++) {
+			PuzzleGeometry geometry = PuzzleGeometry.get(PuzzleFactory
+					.dimsToRegions(boxes[p][0], boxes[p][1]));
+			CanonicalForm form = CanonicalForm.of(puzzles[p], geometry);
+			for (int i = 0; i < 20; i++) {
+				int[] values = isomorph(puzzles[p], boxes[p][0], boxes[p][1],
+						random);
+				CanonicalForm other = CanonicalForm.of(values, geometry);
+				assertEquals(form, other);
+				assertArrayEquals(values, other.fromCanonical(other
+						.getValues()));
+				assertArrayEquals(other.getValues(), other.toCanonical(values));
+			}
+		}
+		PuzzleGeometry nine = PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				3, 3));
+		int[] changed = NINE.clone();
+		changed[0] = 1;
+		assertFalse(CanonicalForm.of(NINE, nine).equals(
+				CanonicalForm.of(changed, nine)));
+	}
+}
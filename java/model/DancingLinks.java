@@ -0,0 +1,308 @@
+package sudoku.model;
+
+import static java.lang.Math.sqrt;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a puzzle as an exact cover problem with Knuth's Algorithm X on
+ * dancing links. The matrix has one column for each square, and for each
+ * value in each row, column and region, so any region layout works.
+ */
+public class DancingLinks {
+
+	/** Left, right, up and down links of each node. */
+	private int[] left, right, up, down;
+	/** Column header of each node. */
+	private int[] column;
+	/** Matrix row of each node. */
+	private int[] row;
+	/** Number of nodes in each column. */
+	private int[] counts;
+	/** Number of nodes in use, including the root and headers. */
+	private int nodes;
+
+	/** Number of search nodes visited by the last solve. */
+	private long nodesVisited;
+	/** Rows chosen so far, by search depth. */
+	private int[] chosen;
+	/** When to give up the current solve, or null for never. */
+	private Deadline deadline;
+	private int width;
+	private int size;
+
+	/**
+	 * Build the matrix for the given squares, 0 meaning unknown, and region
+	 * indices as produced for PuzzleFactory.makePuzzle.
+	 */
+	public DancingLinks(int[] squares, int[][] regions) {
+		width = (int) sqrt(squares.length);
+		size = width * width;
+		int[] regionOf = new int[size];
+		for (int i = 0; i < regions.length; i++) {
+			for (int square : regions[i]) {
+				regionOf[square] = i;
+			}
+		}
+		int columns = 4 * size;
+		int rows = 0;
+		for (int square : squares) {
+			rows += square == 0 ? width : 1;
+		}
+		int capacity = 1 + columns + 4 * rows;
+		left = new int[capacity];
+		right = new int[capacity];
+		up = new int[capacity];
+		down = new int[capacity];
+		column = new int[capacity];
+		row = new int[capacity];
+		counts = new int[columns + 1];
+		chosen = new int[size];
+		// Node 0 is the root; nodes 1 to columns are the headers.
+		for (int i = 0; i <= columns; i++) {
+			left[i] = i == 0 ? columns : i - 1;
+			right[i] = i == columns ? 0 : i + 1;
+			up[i] = down[i] = column[i] = i;
+		}
+		nodes = columns + 1;
+		for (int i = 0; i < size; i++) {
+			int first = squares[i] == 0 ? 1 : squares[i];
+			int last = squares[i] == 0 ? width : squares[i];
+			for (int value = first; value <= last; value++) {
+				addRow(i * width + value - 1, i, i / width, i % width,
+						regionOf[i], value - 1);
+			}
+		}
+	}
+
+	/** Add the matrix row placing value in a square. */
+	private void addRow(int id, int square, int squareRow, int squareColumn,
+			int region, int value) {
+		int[] headers = { 1 + square, 1 + size + squareRow * width + value,
+				1 + 2 * size + squareColumn * width + value,
+				1 + 3 * size + region * width + value };
+		int first = nodes;
+		for (int i = 0; i < headers.length; i++) {
+			int node = nodes++;
+			int header = headers[i];
+			column[node] = header;
+			row[node] = id;
+			up[node] = up[header];
+			down[node] = header;
+			down[up[header]] = node;
+			up[header] = node;
+			counts[header]++;
+			left[node] = i == 0 ? first + headers.length - 1 : node - 1;
+			right[node] = i == headers.length - 1 ? first : node + 1;
+		}
+	}
+
+	/**
+	 * Take every forced choice, then get the rows of the column to branch on,
+	 * each as square * width + value - 1. Returns an empty array if the
+	 * matrix is covered, or null if there is no cover. The matrix is used up.
+	 */
+	int[] branch() {
+		while (right[0] != 0) {
+			int best = chooseColumn();
+			if (counts[best] == 0) {
+				return null;
+			}
+			if (counts[best] > 1) {
+				int[] rows = new int[counts[best]];
+				int count = 0;
+				for (int i = down[best]; i != best; i = down[i]) {
+					rows[count++] = row[i];
+				}
+				return rows;
+			}
+			int i = down[best];
+			cover(best);
+			for (int j = right[i]; j != i; j = right[j]) {
+				cover(column[j]);
+			}
+		}
+		return new int[0];
+	}
+
+	/** Choose the column with the fewest rows. */
+	private int chooseColumn() {
+		int best = right[0];
+		for (int i = right[best]; i != 0; i = right[i]) {
+			if (counts[i] < counts[best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/** Count the covers below the current state of the matrix. */
+	private int count(int limit, AtomicInteger found) {
+		if (found.get() >= limit) {
+			return 0;
+		}
+		nodesVisited++;
+		if (right[0] == 0) {
+			found.incrementAndGet();
+			return 1;
+		}
+		int best = chooseColumn();
+		if (counts[best] == 0) {
+			return 0;
+		}
+		int total = 0;
+		cover(best);
+		for (int i = down[best]; i != best && found.get() < limit; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				cover(column[j]);
+			}
+			total += count(limit, found);
+			for (int j = left[i]; j != i; j = left[j]) {
+				uncover(column[j]);
+			}
+		}
+		uncover(best);
+		return total;
+	}
+
+	/**
+	 * Count the exact covers, stopping once limit have been found. The matrix
+	 * is left as it was.
+	 */
+	public int countSolutions(int limit) {
+		return countSolutions(limit, new AtomicInteger());
+	}
+
+	/**
+	 * Count the exact covers, adding each to found, which may be shared with
+	 * other searches. Stops once found reaches limit.
+	 */
+	int countSolutions(int limit, AtomicInteger found) {
+		nodesVisited = 0;
+		return count(limit, found);
+	}
+
+	/** Remove a column and every row that uses it. */
+	private void cover(int header) {
+		right[left[header]] = right[header];
+		left[right[header]] = left[header];
+		for (int i = down[header]; i != header; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				counts[column[j]]--;
+			}
+		}
+	}
+
+	/** Count the search nodes visited by the last solve. */
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	/** Search for an exact cover; returns true once one is found. */
+	private boolean search(int depth) {
+		if (deadline != null && deadline.isExpired()) {
+			return false;
+		}
+		nodesVisited++;
+		if (right[0] == 0) {
+			return true;
+		}
+		int best = chooseColumn();
+		if (counts[best] == 0) {
+			return false;
+		}
+		cover(best);
+		for (int i = down[best]; i != best; i = down[i]) {
+			chosen[depth] = row[i];
+			for (int j = right[i]; j != i; j = right[j]) {
+				cover(column[j]);
+			}
+			if (search(depth + 1)) {
+				return true;
+			}
+			for (int j = left[i]; j != i; j = left[j]) {
+				uncover(column[j]);
+			}
+		}
+		uncover(best);
+		return false;
+	}
+
+	/**
+	 * Find a solution. Returns the value of every square, or null if the
+	 * puzzle has no solution. The matrix is used up by a successful solve.
+	 */
+	public int[] solve() {
+		return solve(null);
+	}
+
+	/**
+	 * Find a solution, giving up once the deadline expires, or never if it
+	 * is null. Returns the value of every square, or null if the puzzle has
+	 * no solution or the deadline expired first.
+	 */
+	public int[] solve(Deadline deadline) {
+		this.deadline = deadline;
+		nodesVisited = 0;
+		try {
+			if (!search(0)) {
+				return null;
+			}
+		} finally {
+			this.deadline = null;
+		}
+		int[] solution = new int[size];
+		for (int i = 0; i < size; i++) {
+			solution[chosen[i] / width] = chosen[i] % width + 1;
+		}
+		return solution;
+	}
+
+	/**
+	 * Put the rows of every column in random order, so that solve finds a
+	 * random solution.
+	 */
+	public void shuffle(Random random) {
+		int[] nodesOf = new int[width];
+		for (int header = 1; header < counts.length; header++) {
+			int count = 0;
+			for (int i = down[header]; i != header; i = down[i]) {
+				if (count == nodesOf.length) {
+					nodesOf = Arrays.copyOf(nodesOf, count * 2);
+				}
+				nodesOf[count++] = i;
+			}
+			for (int i = count - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int node = nodesOf[i];
+				nodesOf[i] = nodesOf[j];
+				nodesOf[j] = node;
+			}
+			int previous = header;
+			for (int i = 0; i < count; i++) {
+				down[previous] = nodesOf[i];
+				up[nodesOf[i]] = previous;
+				previous = nodesOf[i];
+			}
+			down[previous] = header;
+			up[header] = previous;
+		}
+	}
+
+	/** Put back a column removed by cover. */
+	private void uncover(int header) {
+		for (int i = up[header]; i != header; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				counts[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[header]] = header;
+		left[right[header]] = header;
+	}
+}
@@ -0,0 +1,86 @@
+package sudoku.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time after which a solve should give up, or a token that can
+ * be cancelled from another thread, or both. Propagation, guessing and
+ * search check it between steps, so a solve stops soon after it expires.
+ * Interrupting the solving thread only stops the solve if its deadline came
+ * from onInterrupt or interruptible; otherwise cancel the deadline instead.
+ */
+public class Deadline {
+
+	/** Make a deadline the given time from now. */
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(null, System.nanoTime() + unit.toNanos(duration),
+				true, null);
+	}
+
+	/**
+	 * Make a token that expires when cancelled or when the calling thread is
+	 * interrupted, as by Future.cancel(true) or shutdownNow.
+	 */
+	public static Deadline onInterrupt() {
+		return new Deadline().interruptible();
+	}
+
+	/** Time it expires, as from System.nanoTime. */
+	private final long at;
+	private volatile boolean cancelled;
+	/** A deadline that expires this one too, or null. */
+	private final Deadline parent;
+	/** A thread whose interruption expires the deadline, or null. */
+	private final Thread thread;
+	/** Whether the deadline expires on its own at a set time. */
+	private final boolean timed;
+
+	/** Make a token that only expires when cancelled. */
+	public Deadline() {
+		this(null, 0, false, null);
+	}
+
+	private Deadline(Deadline parent, long at, boolean timed, Thread thread) {
+		this.parent = parent;
+		this.at = at;
+		this.timed = timed;
+		this.thread = thread;
+	}
+
+	/** Expire the deadline now, from any thread. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Make a token that expires when cancelled itself or when this deadline
+	 * expires.
+	 */
+	public Deadline child() {
+		return new Deadline(this, 0, false, null);
+	}
+
+	/**
+	 * Make a token that expires when cancelled itself, when this deadline
+	 * expires or when the calling thread is interrupted.
+	 */
+	public Deadline interruptible() {
+		return new Deadline(this, 0, false, Thread.currentThread());
+	}
+
+	/**
+	 * Check if the deadline has passed or been cancelled. Once expired, it
+	 * stays expired, even if the thread's interrupt is later cleared.
+	 */
+	public boolean isExpired() {
+		if (cancelled) {
+			return true;
+		}
+		if (thread != null && thread.isInterrupted() || timed
+				&& System.nanoTime() - at >= 0 || parent != null
+				&& parent.isExpired()) {
+			cancelled = true;
+		}
+		return cancelled;
+	}
+}
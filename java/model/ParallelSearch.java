@@ -0,0 +1,192 @@
+package sudoku.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves a single puzzle by depth-first search on a work-stealing pool. The
+ * top levels of the search tree are split into tasks, each with its own copy
+ * of the puzzle, and below them each task searches its subtree as search
+ * does. Subtrees are numbered in the order search would visit them. When a
+ * solution is found, every subtree after it is cancelled, and the solution
+ * of the first subtree to have one is kept, so the answer is the one search
+ * gives. For a puzzle with one solution, the whole search stops at once.
+ */
+public class ParallelSearch {
+
+	/** Number of search levels split into tasks by default. */
+	public static final int SPLIT_DEPTH = 6;
+
+	private ForkJoinPool pool;
+	/** Number of search levels split into tasks. */
+	private int splitDepth;
+
+	/** Search on all available processors. */
+	public ParallelSearch() {
+		this(Runtime.getRuntime().availableProcessors(), SPLIT_DEPTH);
+	}
+
+	public ParallelSearch(int parallelism, int splitDepth) {
+		pool = new ForkJoinPool(parallelism);
+		this.splitDepth = splitDepth;
+	}
+
+	/** Stop the worker threads once the current searches are done. */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Solve the puzzle, leaving it as search would. Throws
+	 * InconsistentPuzzleError, leaving the puzzle unchanged, if there is no
+	 * solution.
+	 */
+	public void solve(Puzzle puzzle) throws InconsistentPuzzleError {
+		solve(puzzle, null);
+	}
+
+	/**
+	 * Solve the puzzle, giving up once the deadline expires, or never if it
+	 * is null. Returns TIMED_OUT, leaving the puzzle unchanged, if it expired
+	 * first.
+	 */
+	public SolveStatus solve(Puzzle puzzle, Deadline deadline)
+			throws InconsistentPuzzleError {
+		Search search = new Search(puzzle.getGeometry().getWidth(), deadline);
+		pool.invoke(search.new Node(puzzle.clone(), -1, 0, 0));
+		if (search.solution == null) {
+			if (deadline != null && deadline.isExpired()) {
+				return SolveStatus.TIMED_OUT;
+			}
+			throw (new InconsistentPuzzleError());
+		}
+		puzzle.useSolution(search.solution, search.nodesVisited.get());
+		return SolveStatus.SOLVED;
+	}
+
+	/** The state shared by the tasks of one search. */
+	private class Search {
+		/** Number of the first subtree found to hold a solution. */
+		final AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+		/** Bits used to number each branch of a node. */
+		final int bits;
+		/** When to give up, or null for never. */
+		final Deadline deadline;
+		/** Number of search levels split into tasks. */
+		final int depth;
+		/** Subtrees being searched, to be cancelled when a solution is found. */
+		final Queue<Leaf> leaves = new ConcurrentLinkedQueue<Leaf>();
+		final AtomicLong nodesVisited = new AtomicLong();
+		/** Values of the solution in the best subtree. */
+		int[] solution;
+
+		Search(int width, Deadline deadline) {
+			this.deadline = deadline;
+			bits = Integer.SIZE - Integer.numberOfLeadingZeros(width);
+			depth = Math.min(splitDepth, (Long.SIZE - 1) / bits);
+		}
+
+		/** Get the number of the first subtree below a node. */
+		long first(long key, int level) {
+			return key << bits * (depth - level);
+		}
+
+		/**
+		 * Keep a solution from the subtree with the given number if no
+		 * earlier subtree has one, and cancel the subtrees after it.
+		 */
+		synchronized void offer(long key, int[] values) {
+			if (key >= best.get()) {
+				return;
+			}
+			best.set(key);
+			solution = values;
+			for (Leaf leaf : leaves) {
+				if (leaf.key > key) {
+					leaf.cancelled.cancel();
+				}
+			}
+		}
+
+		/** A subtree below the split levels, searched on one thread. */
+		class Leaf {
+			final Deadline cancelled;
+			final long key;
+
+			Leaf(long key) {
+				this.key = key;
+				cancelled = deadline == null ? new Deadline() : deadline
+						.child();
+			}
+		}
+
+		/** A node of the search tree, with the square fixed to reach it. */
+		class Node extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+
+			private int changed;
+			private long key;
+			private int level;
+			private Puzzle puzzle;
+
+			Node(Puzzle puzzle, int changed, int level, long key) {
+				this.puzzle = puzzle;
+				this.changed = changed;
+				this.level = level;
+				this.key = key;
+			}
+
+			protected void compute() {
+				if (best.get() < first(key, level) || deadline != null
+						&& deadline.isExpired()) {
+					return;
+				}
+				if (level == depth) {
+					search();
+					return;
+				}
+				int index = puzzle.searchStep(changed);
+				nodesVisited.incrementAndGet();
+				if (index == Puzzle.DEAD_END) {
+					return;
+				}
+				if (index < 0) {
+					offer(first(key, level), puzzle.getValues());
+					return;
+				}
+				int[] options = puzzle.getSquares()[index].getCandidateValues();
+				List<Node> children = new ArrayList<Node>(options.length);
+				for (int i = 0; i < options.length; i++) {
+					Puzzle child = i < options.length - 1 ? puzzle.clone()
+							: puzzle;
+					child.getSquares()[index].fix(options[i]);
+					children.add(new Node(child, index, level + 1, key << bits
+							| i));
+				}
+				puzzle = null;
+				invokeAll(children);
+			}
+
+			/** Search the subtree below the node on this thread. */
+			private void search() {
+				Leaf leaf = new Leaf(key);
+				leaves.add(leaf);
+				if (best.get() < key) {
+					leaf.cancelled.cancel();
+				}
+				long visited = puzzle.getNodesVisited();
+				boolean solved = puzzle.searchSubtree(changed, leaf.cancelled);
+				nodesVisited.addAndGet(puzzle.getNodesVisited() - visited);
+				leaves.remove(leaf);
+				if (solved) {
+					offer(key, puzzle.getValues());
+				}
+			}
+		}
+	}
+}
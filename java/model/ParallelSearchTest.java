@@ -0,0 +1,80 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelSearchTest {
+
+	private ParallelSearch search;
+
+	@Before
+	public void setUp() {
+		search = new ParallelSearch(4, 3);
+	}
+
+	@After
+	public void tearDown() {
+		search.shutdown();
+	}
+
+	/** Check that the parallel search finds the solution search finds. */
+	private void assertSameAnswer(Puzzle puzzle)
+			throws InconsistentPuzzleError {
+		Puzzle sequential = puzzle.clone();
+		sequential.solve(Strategy.SEARCH);
+		Puzzle parallel = puzzle.clone();
+		search.solve(parallel);
+		assertArrayEquals(sequential.getValues(), parallel.getValues());
+	}
+
+	@Test
+	public void inconsistent() throws InvalidPuzzleError {
+		Puzzle bad = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 1 });
+		int[] values = bad.getValues();
+		try {
+			search.solve(bad);
+			fail("There is no solution.");
+		} catch (InconsistentPuzzleError error) {
+		}
+		assertArrayEquals(values, bad.getValues());
+	}
+
+	@Test
+	public void sameAnswer() throws InvalidPuzzleError,
+			InconsistentPuzzleError {
+		for (int width : new int[] { 4, 9, 16, 25 }) {
+			assertSameAnswer(PuzzleFactory.makePuzzle(new int[width * width]));
+		}
+		Random random = new Random(5);
+		PuzzleGeometry[] geometries = new PuzzleGeometry[] {
+				PuzzleFactory.makePuzzle(new int[81]).getGeometry(),
+				PuzzleGeneratorTest.SQUIGGLY };
+		for (PuzzleGeometry geometry : geometries) {
+			PuzzleGenerator generator = new PuzzleGenerator(geometry,
+					Symmetry.NONE, 1);
+			for (int i = 0; i < 5; i++) {
+				int[] values = generator.generate(random);
+				assertSameAnswer(new Puzzle(values, geometry));
+				if (geometry.getBox() == null) {
+					// Irregular puzzles with clues taken away can take
+					// seconds to search.
+					continue;
+				}
+				// With clues taken away, there are many solutions to choose
+				// from.
+				for (int j = 0; j < values.length; j += 3) {
+					values[j] = 0;
+				}
+				assertSameAnswer(new Puzzle(values, geometry));
+			}
+			generator.shutdown();
+		}
+	}
+}
@@ -1,33 +1,64 @@
 package sudoku.model;
 
-import static java.lang.Math.sqrt;
+import static java.util.Arrays.fill;
 
-import java.io.FileNotFoundException;
-import java.util.HashSet;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import mapfile.ReadError;
-import sudoku.io.SdkReader;
+import sudoku.io.StreamSolver;
 
 public class Puzzle {
 
+	/**
+	 * Narrowest puzzle whose guesses are tried in parallel when a pool is
+	 * given. Below it, a trial is too quick to be worth handing out.
+	 */
+	public static final int PARALLEL_GUESS_WIDTH = 16;
+
+	/** Returned by searchStep for a node with no solution below it. */
+	static final int DEAD_END = -2;
+	/**
+	 * Number of times isStopped is asked between looks at the deadline, which
+	 * may read the clock, next to which propagating one section is cheap.
+	 */
+	private static final int DEADLINE_INTERVAL = 64;
+
 	/** Count the number of times each possible value occurs in the section. */
 	protected static int[] countEachPossibility(Square[] section) {
 		int[] counters = new int[section.length + 1];
 		for (Square square : section) {
-			if (!square.isFixed()) {
-				for (int option : square.getCandidates()) {
-					counters[option] += 1;
+			countPossibilities(square, counters);
+		}
+		return counters;
+	}
+
+	/** Add one to the counter of each candidate of the square. */
+	private static void countPossibilities(Square square, int[] counters) {
+		if (square.isFixed()) {
+			counters[square.getValue()] += 1;
+		} else if (!square.isWide()) {
+			for (int bits = square.getMask(); bits != 0; bits &= bits - 1) {
+				counters[Integer.numberOfTrailingZeros(bits) + 1] += 1;
+			}
+		} else {
+			long[] words = square.getWords();
+			for (int i = 0; i < words.length; i++) {
+				for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+					counters[i * Long.SIZE + Long.numberOfTrailingZeros(bits)
+							+ 1] += 1;
 				}
-			} else {
-				counters[square.getValue()] += 1;
 			}
 		}
-		return counters;
 	}
 
 	/** Search for squares in the section with only one possible value. */
@@ -38,36 +69,55 @@ public class Puzzle {
 				for (Square square : section) {
 					if (square.hasCandidate(i)) {
 						square.fix(i);
+						break;
 					}
 				}
 			}
 		}
 	}
 
-	/** Read a puzzle from stdin and attempt to solve it. */
-	public static void main(String[] args) throws InvalidPuzzleError,
-			InconsistentPuzzleError, ReadError, FileNotFoundException {
-		Scanner STDIN = new Scanner(System.in);
-		String file = "";
-		while (true) {
-			try {
-				String line = STDIN.nextLine();
-				file += line + "\n";
-			} catch (NoSuchElementException error) {
-				break;
-			}
+	/**
+	 * Read puzzles from stdin and solve each one as soon as it has been read,
+	 * so a single process can serve a pipe. The .sdk documents are separated
+	 * by blank lines, or by the line given as the first argument.
+	 */
+	public static void main(String[] args) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out,
+				"UTF-8"), 1 << 16);
+		StreamSolver solver = new StreamSolver(args.length > 0 ? args[0]
+				: StreamSolver.BLANK, Strategy.PROPAGATE);
+		solver.solve(Channels.newChannel(System.in), out, System.err);
+		out.flush();
+		if (solver.getFailures() > 0) {
+			System.exit(1);
 		}
-		Puzzle puzzle = new SdkReader(file).read();
-		puzzle.solve();
-		System.out.println(puzzle);
 	}
 
 	/** Prune all the impossible values from the section. */
 	protected static void pruneSection(Square[] section) {
-		Set<Integer> unavailable = new HashSet<Integer>();
+		if (section.length > Square.MASK_BITS) {
+			pruneWideSection(section);
+			return;
+		}
+		int unavailable = 0;
+		for (Square square : section) {
+			if (square.isFixed()) {
+				unavailable |= Square.bit(square.getValue());
+			}
+		}
+		for (Square square : section) {
+			if (!square.isFixed()) {
+				square.remove(unavailable);
+			}
+		}
+	}
+
+	/** Prune a section too wide for a single candidate mask. */
+	private static void pruneWideSection(Square[] section) {
+		long[] unavailable = new long[Square.wordCount(section.length)];
 		for (Square square : section) {
 			if (square.isFixed()) {
-				unavailable.add(square.getValue());
+				Square.setWordBit(unavailable, square.getValue());
 			}
 		}
 		for (Square square : section) {
@@ -79,76 +129,67 @@ public class Puzzle {
 
 	/** All the squares in the puzzle. */
 	private Square[] squares;
-	/** All the rows in the puzzle. */
-	private Square[][] rows;
-	/** All the columns in the puzzle. */
-	private Square[][] columns;
-	/** All the regions in the puzzle. */
-	private Square[][] regions;
-	private int[][] regionIndices;
-	/** All rows, columns, and regions in the puzzle. */
-	private Square[][] sections;
-	/** Number of squares. */
-	private int size;
-	/** Width of the puzzle. */
-	private int width;
+	/** When to stop propagating and searching early, or null for never. */
+	private Deadline deadline;
+	/** Times isStopped has been asked since the deadline was set. */
+	private int deadlineChecks;
+	/** Whether isStopped has found the deadline expired. */
+	private boolean stopped;
+	/** Counter for each value, reused while propagating. */
+	private int[] counters;
+	/** Layout of the rows, columns and regions, shared between puzzles. */
+	private PuzzleGeometry geometry;
+	/** Pool that tries the candidates of a guess at once, or null. */
+	private ForkJoinPool guessPool;
+	/** Number of search nodes visited by the last solve. */
+	private long nodesVisited;
+	/** Sections waiting to be propagated, as a ring buffer. */
+	private int[] queue;
+	/** Whether each section is in the queue. */
+	private boolean[] queued;
+	private int queueHead, queueSize;
+	/** Figures on the work done, or null if they are not kept. */
+	private SolveStats stats;
+	/** Changes to the squares since the last open mark. */
+	private Trail trail = new Trail();
+	/** Fixed values of a wide section, reused while propagating. */
+	private long[] wideUnavailable;
 
 	// Only around for the sake of the clone method
 	public Puzzle() {
 	}
 
 	public Puzzle(int[] squares, int[][] regions) {
-		width = (int) sqrt(squares.length);
-		size = width * width;
-		Square.setValues(width);
-		this.squares = new Square[width * width];
-		// Initialize squares
+		this(squares, PuzzleGeometry.get(regions));
+	}
+
+	public Puzzle(int[] squares, PuzzleGeometry geometry) {
+		this.geometry = geometry;
+		this.squares = new Square[squares.length];
 		for (int i = 0; i < squares.length; i++) {
 			if (squares[i] == 0) {
-				this.squares[i] = new Square();
+				this.squares[i] = Square.unknown(geometry.getWidth());
 			} else {
 				this.squares[i] = new Square(squares[i]);
 			}
-		}
-		// Initialize sections (rows, columns, regions)
-		rows = new Square[width][width];
-		columns = new Square[width][width];
-		this.regionIndices = regions;
-		this.regions = new Square[width][width];
-		sections = new Square[width * 3][width];
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < width; j++) {
-				rows[i][j] = this.squares[i * width + j];
-				sections[i][j] = rows[i][j];
-				columns[i][j] = this.squares[j * width + i];
-				sections[i + width][j] = columns[i][j];
-				this.regions[i][j] = this.squares[regions[i][j]];
-				sections[i + 2 * width][j] = this.regions[i][j];
-			}
+			this.squares[i].trail = trail;
+			this.squares[i].index = i;
 		}
 	}
 
 	/** Create a copy of the puzzle. */
 	public Puzzle clone() {
 		Puzzle clone = new Puzzle();
-		clone.width = width;
-		clone.size = size;
-		clone.squares = new Square[width * width];
+		clone.geometry = geometry;
+		clone.guessPool = guessPool;
+		clone.squares = new Square[squares.length];
 		for (int i = 0; i < squares.length; i++) {
 			clone.squares[i] = squares[i].clone();
+			clone.squares[i].trail = clone.trail;
+			clone.squares[i].index = i;
 		}
-		clone.rows = new Square[width][width];
-		clone.columns = new Square[width][width];
-		clone.regions = new Square[width][width];
-		clone.sections = new Square[width * 3][width];
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < width; j++) {
-				clone.sections[i][j] = clone.rows[i][j] = clone.squares[i
-						* width + j];
-				clone.sections[i + width][j] = clone.columns[i][j] = clone.squares[j
-						* width + i];
-				clone.sections[i + 2 * width][j] = clone.regions[i][j] = clone.squares[regionIndices[i][j]];
-			}
+		if (stats != null) {
+			stats.clones++;
 		}
 		return clone;
 	}
@@ -167,6 +208,78 @@ public class Puzzle {
 		return sum;
 	}
 
+	/**
+	 * Count the solutions that agree with the fixed squares, stopping once
+	 * limit have been found. The puzzle is left as it was.
+	 */
+	public int countSolutions(int limit) {
+		DancingLinks links = new DancingLinks(getValues(),
+				geometry.getRegions());
+		int count = links.countSolutions(limit);
+		nodesVisited = links.getNodesVisited();
+		return count;
+	}
+
+	/**
+	 * Count the number of times each possible value occurs in a section,
+	 * reusing the puzzle's counters.
+	 */
+	private int[] countEachPossibility(int[] section) {
+		fill(counters, 0);
+		for (int index : section) {
+			countPossibilities(squares[index], counters);
+		}
+		return counters;
+	}
+
+	/** Allocate the propagation buffers the first time they are needed. */
+	private void createQueue() {
+		if (queue == null) {
+			int width = geometry.getWidth();
+			queue = new int[geometry.getSectionCount()];
+			queued = new boolean[queue.length];
+			counters = new int[width + 1];
+			if (width > Square.MASK_BITS) {
+				wideUnavailable = new long[Square.wordCount(width)];
+			}
+		}
+	}
+
+	/** Propagate sections off the queue until it is empty. */
+	private boolean drainQueue(boolean singletons) {
+		long start = stats != null ? System.nanoTime() : 0;
+		boolean consistent = true;
+		while (queueSize > 0 && consistent
+				&& !isStopped()) {
+			int section = queue[queueHead];
+			queueHead = (queueHead + 1) % queue.length;
+			queueSize--;
+			queued[section] = false;
+			consistent = propagateSection(section, singletons);
+		}
+		while (queueSize > 0) {
+			queued[queue[queueHead]] = false;
+			queueHead = (queueHead + 1) % queue.length;
+			queueSize--;
+		}
+		if (stats != null) {
+			stats.propagations++;
+			stats.propagateNanos += System.nanoTime() - start;
+		}
+		return consistent;
+	}
+
+	/** Add the row, column and region of a square to the queue. */
+	private void enqueueSquare(int index) {
+		for (int section : geometry.getSectionsOf(index)) {
+			if (!queued[section]) {
+				queued[section] = true;
+				queue[(queueHead + queueSize) % queue.length] = section;
+				queueSize++;
+			}
+		}
+	}
+
 	/**
 	 * Check if all the squares with known values are equal. Ignore squares with
 	 * multiple candidates.
@@ -188,12 +301,57 @@ public class Puzzle {
 
 	/** Find all squares with only one candidate. */
 	protected void findSingletons() {
-		for (Square[] section : sections) {
+		for (Square[] section : getSections()) {
 			findSingletonInSection(section);
 		}
 	}
 
+	public PuzzleGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Count the search nodes visited by the last solve: one per candidate
+	 * tried by guessByIndex, or one per node of the depth-first search.
+	 */
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	/** Get the region a square index belongs to. */
+	protected int getRegion(int index) {
+		return geometry.getRegion(index);
+	}
+
+	/** Get the squares of every row in order. */
+	protected Square[][] getRows() {
+		int width = geometry.getWidth();
+		Square[][] rows = new Square[width][];
+		for (int i = 0; i < width; i++) {
+			rows[i] = getSection(i);
+		}
+		return rows;
+	}
+
+	/** Get the squares of one row, column or region. */
+	private Square[] getSection(int section) {
+		int[] indices = geometry.getSection(section);
+		Square[] result = new Square[indices.length];
+		for (int j = 0; j < indices.length; j++) {
+			result[j] = squares[indices[j]];
+		}
+		return result;
+	}
+
+	/**
+	 * Get the squares of all rows, columns, and regions. The arrays are built
+	 * on each call; the puzzle itself only keeps the geometry.
+	 */
 	public Square[][] getSections() {
+		Square[][] sections = new Square[geometry.getSectionCount()][];
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = getSection(i);
+		}
 		return sections;
 	}
 
@@ -201,53 +359,154 @@ public class Puzzle {
 		return squares;
 	}
 
+	/** Get the figures being kept on the work done, or null. */
+	public SolveStats getStats() {
+		return stats;
+	}
+
+	/** Get the value of every square, with 0 for squares not yet fixed. */
+	public int[] getValues() {
+		int[] values = new int[squares.length];
+		for (int i = 0; i < squares.length; i++) {
+			if (squares[i].isFixed()) {
+				values[i] = squares[i].getValue();
+			}
+		}
+		return values;
+	}
+
 	/**
 	 * Try all possibilities in the square at index. Eliminate any that result
-	 * in an inconsistent puzzle.
+	 * in an inconsistent puzzle. Puzzles at least PARALLEL_GUESS_WIDTH wide
+	 * try them at once if given a pool by setGuessPool.
 	 */
 	protected List<Integer> guessByIndex(int index) {
-		List<Integer> possible = new LinkedList<Integer>();
-		for (int option : squares[index].getCandidates()) {
-			Puzzle temp = clone();
-			temp.squares[index].fix(option);
-			temp.prune();
-			if (temp.isConsistent()) {
-				possible.add(option);
+		long start = stats != null ? System.nanoTime() : 0;
+		List<Integer> possible;
+		if (guessPool != null && geometry.getWidth() >= PARALLEL_GUESS_WIDTH
+				&& squares[index].countCandidates() > 1) {
+			possible = guessInParallel(index);
+		} else {
+			possible = new LinkedList<Integer>();
+			for (int option : squares[index].getCandidateValues()) {
+				if (isStopped()) {
+					possible.add(option);
+					continue;
+				}
+				nodesVisited++;
+				if (stats != null) {
+					stats.guesses++;
+				}
+				int mark = mark();
+				squares[index].fix(option);
+				prune();
+				if (isConsistent()) {
+					possible.add(option);
+				}
+				undo(mark);
 			}
 		}
+		if (stats != null) {
+			stats.guessNanos += System.nanoTime() - start;
+		}
 		return possible;
 	}
 
-	/** Check if a square index is in the region. */
-	protected boolean inRegion(int j, int[] region) {
-		for (int candidate : region) {
-			if (candidate == j) {
-				return true;
+	/**
+	 * Try each candidate of the square at index on its own clone, on the
+	 * guess pool. The clones are made first, so only the trials run at once.
+	 * Once all but one candidate have been eliminated, the trial of the last
+	 * is cancelled and it is kept: the square is narrowed to it either way,
+	 * and if it is inconsistent too the next prune finds out. Candidates
+	 * whose trials are cut short by the deadline are kept too.
+	 */
+	private List<Integer> guessInParallel(final int index) {
+		final int[] options = squares[index].getCandidateValues();
+		final Deadline narrowed = deadline == null ? new Deadline()
+				: deadline.child();
+		final AtomicInteger remaining = new AtomicInteger(options.length);
+		final List<RecursiveTask<Boolean>> trials = new ArrayList<RecursiveTask<Boolean>>();
+		for (final int option : options) {
+			final Puzzle trial = clone();
+			trial.setDeadline(narrowed);
+			trials.add(new RecursiveTask<Boolean>() {
+				private static final long serialVersionUID = 1L;
+
+				protected Boolean compute() {
+					if (narrowed.isExpired()) {
+						return true;
+					}
+					trial.squares[index].fix(option);
+					trial.prune();
+					if (narrowed.isExpired() || trial.isConsistent()) {
+						return true;
+					}
+					if (remaining.decrementAndGet() == 1) {
+						narrowed.cancel();
+					}
+					return false;
+				}
+			});
+		}
+		guessPool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			protected void compute() {
+				invokeAll(trials);
 			}
+		});
+		nodesVisited += options.length;
+		if (stats != null) {
+			stats.guesses += options.length;
 		}
-		return false;
+		List<Integer> possible = new LinkedList<Integer>();
+		for (int i = 0; i < options.length; i++) {
+			if (trials.get(i).join()) {
+				possible.add(options[i]);
+			}
+		}
+		return possible;
 	}
 
-	/** Check if a square is in the region. */
-	protected boolean inRegion(Square j, Square[] region) {
-		for (Square candidate : region) {
-			if (candidate == j) {
-				return true;
+	/** Check if any section has the same value fixed in two squares. */
+	public boolean hasConflicts() {
+		int width = geometry.getWidth();
+		long[] seen = new long[Square.wordCount(width)];
+		for (int s = 0; s < geometry.getSectionCount(); s++) {
+			fill(seen, 0);
+			for (int index : geometry.getSection(s)) {
+				Square square = squares[index];
+				if (square.isFixed()) {
+					int value = square.getValue() - 1;
+					if (value >= 0 && value < width) {
+						long bit = 1L << (value & 63);
+						if ((seen[value >>> 6] & bit) != 0) {
+							return true;
+						}
+						seen[value >>> 6] |= bit;
+					}
+				}
 			}
 		}
 		return false;
 	}
 
+	/** Check if the puzzle has exactly one solution. */
+	public boolean hasUniqueSolution() {
+		return countSolutions(2) == 1;
+	}
+
+	/** Check if the squares at two indices are in the same region. */
+	protected boolean inSameRegion(int i, int j) {
+		return geometry.inSameRegion(i, j);
+	}
+
 	/** Check if two squares are in the same region. */
 	protected boolean inSameRegion(Square i, Square j) {
-		for (Square[] region : regions) {
-			for (Square candidate : region) {
-				if (i == candidate) {
-					return inRegion(j, region);
-				}
-			}
+		if (squares[i.index] != i || squares[j.index] != j) {
+			return false;
 		}
-		return false;
+		return geometry.inSameRegion(i.index, j.index);
 	}
 
 	/**
@@ -263,6 +522,21 @@ public class Puzzle {
 		return true;
 	}
 
+	/**
+	 * Check if the deadline of the current solve has expired, looking at it
+	 * only every DEADLINE_INTERVAL times, starting with the first. A deadline
+	 * stays expired, so once this is true it stays true.
+	 */
+	private boolean isStopped() {
+		if (deadline == null) {
+			return false;
+		}
+		if (!stopped && deadlineChecks++ % DEADLINE_INTERVAL == 0) {
+			stopped = deadline.isExpired();
+		}
+		return stopped;
+	}
+
 	/** Check if the puzzle has been solved. */
 	public boolean isSolved() {
 		for (Square square : squares) {
@@ -273,36 +547,320 @@ public class Puzzle {
 		return true;
 	}
 
+	/**
+	 * Mark the current state of the squares. Changes made after this can be
+	 * rolled back with undo.
+	 */
+	public int mark() {
+		int mark = trail.mark();
+		if (stats != null) {
+			stats.reachDepth(trail.getDepth());
+		}
+		return mark;
+	}
+
+	/**
+	 * Find the unfixed square with the fewest candidates. Returns -1 if every
+	 * square is fixed.
+	 */
+	protected int mostConstrainedSquare() {
+		int best = -1;
+		int fewest = Integer.MAX_VALUE;
+		for (int i = 0; i < squares.length; i++) {
+			if (!squares[i].isFixed()) {
+				int count = squares[i].countCandidates();
+				if (count < fewest) {
+					best = i;
+					fewest = count;
+					if (count <= 2) {
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Apply the section rules until nothing changes. Only the sections of
+	 * squares that change are looked at again. Stops early if a square runs
+	 * out of candidates. Returns false if the puzzle is left inconsistent.
+	 */
+	private boolean propagate(boolean singletons) {
+		createQueue();
+		for (int i = 0; i < queue.length; i++) {
+			queue[i] = i;
+			queued[i] = true;
+		}
+		queueHead = 0;
+		queueSize = queue.length;
+		return drainQueue(singletons);
+	}
+
+	/**
+	 * Propagate from the sections of one square, for when only that square
+	 * has changed since the puzzle was last pruned.
+	 */
+	private boolean propagateFrom(int index) {
+		createQueue();
+		queueHead = queueSize = 0;
+		enqueueSquare(index);
+		return drainQueue(true);
+	}
+
+	/**
+	 * Remove the fixed values of a section from its other squares, then, if
+	 * singletons is set, fix any value with only one place to go. Returns
+	 * false if a square runs out of candidates.
+	 */
+	private boolean propagateSection(int s, boolean singletons) {
+		if (stats != null) {
+			stats.sectionsSwept++;
+		}
+		int[] section = geometry.getSection(s);
+		int unavailable = 0;
+		if (wideUnavailable != null) {
+			fill(wideUnavailable, 0);
+		}
+		for (int index : section) {
+			Square square = squares[index];
+			if (square.isFixed()) {
+				if (wideUnavailable == null) {
+					unavailable |= Square.bit(square.getValue());
+				} else {
+					Square.setWordBit(wideUnavailable, square.getValue());
+				}
+			}
+		}
+		for (int index : section) {
+			Square square = squares[index];
+			if (!square.isFixed()) {
+				int before = stats != null ? square.countCandidates() : 0;
+				boolean changed = wideUnavailable == null ? square
+						.remove(unavailable) : square.remove(wideUnavailable);
+				if (changed) {
+					if (stats != null) {
+						stats.pruneEliminations += before
+								- square.countCandidates();
+					}
+					if (square.countCandidates() == 0) {
+						return false;
+					}
+					if (singletons || square.isFixed()) {
+						enqueueSquare(index);
+					}
+				}
+			}
+		}
+		if (!singletons) {
+			return true;
+		}
+		int[] counters = countEachPossibility(section);
+		for (int i = 1; i < counters.length; i++) {
+			if (counters[i] == 1) {
+				for (int index : section) {
+					if (squares[index].hasCandidate(i)) {
+						if (stats != null) {
+							stats.singletonEliminations += squares[index]
+									.countCandidates() - 1;
+						}
+						squares[index].fix(i);
+						enqueueSquare(index);
+						break;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
 	/** Prune down possiblities as much as feasible. */
 	protected void prune() {
-		int oldCount = -1;
-		while (oldCount != countCandidates()) {
-			oldCount = countCandidates();
-			pruneSections();
-			findSingletons();
-		}
+		propagate(true);
 	}
 
 	/** Prune all the sections. */
 	protected void pruneSections() {
-		int oldCount = -1;
-		while (oldCount != countCandidates()) {
-			oldCount = countCandidates();
-			for (Square[] section : sections) {
-				pruneSection(section);
+		propagate(false);
+	}
+
+	/**
+	 * Solve the puzzle by depth-first search. Throws InconsistentPuzzleError,
+	 * leaving the puzzle unchanged, if there is no solution. If the deadline
+	 * of the solve expires first, the puzzle is left unchanged and unsolved.
+	 */
+	public void search() throws InconsistentPuzzleError {
+		nodesVisited = 0;
+		int mark = mark();
+		if (!searchNode(-1)) {
+			undo(mark);
+			if (!isStopped()) {
+				throw (new InconsistentPuzzleError());
 			}
+			return;
 		}
+		trail.commit(mark);
+	}
+
+	/**
+	 * Prune, from the changed square if there is one, then try each candidate
+	 * of the most constrained square in turn. Returns true with the puzzle
+	 * solved, or false with the puzzle in an inconsistent state or the search
+	 * cancelled.
+	 */
+	private boolean searchNode(int changed) {
+		if (isStopped()) {
+			return false;
+		}
+		int index = searchStep(changed);
+		if (index == DEAD_END) {
+			return false;
+		}
+		if (index < 0) {
+			return true;
+		}
+		for (int option : squares[index].getCandidateValues()) {
+			if (stats != null) {
+				stats.guesses++;
+			}
+			int mark = mark();
+			squares[index].fix(option);
+			if (searchNode(index)) {
+				trail.commit(mark);
+				return true;
+			}
+			undo(mark);
+		}
+		return false;
+	}
+
+	/**
+	 * Visit a search node: prune, from the changed square if there is one,
+	 * and pick the square to branch on. Returns its index, -1 if the puzzle
+	 * is solved, or DEAD_END if it is inconsistent.
+	 */
+	int searchStep(int changed) {
+		nodesVisited++;
+		boolean consistent = changed < 0 ? propagate(true)
+				: propagateFrom(changed);
+		if (!consistent || !isConsistent() || hasConflicts()) {
+			return DEAD_END;
+		}
+		return mostConstrainedSquare();
+	}
+
+	/**
+	 * Search below this node on its own, stopping early if the deadline
+	 * expires. The changed square is the one fixed to reach the node, or -1
+	 * at the root. Returns true with the puzzle solved.
+	 */
+	boolean searchSubtree(int changed, Deadline deadline) {
+		setDeadline(deadline);
+		try {
+			return searchNode(changed);
+		} finally {
+			setDeadline(null);
+		}
+	}
+
+	/** Set the deadline of a solve, or null, and start looking at it anew. */
+	private void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+		deadlineChecks = 0;
+		stopped = false;
+	}
+
+	/**
+	 * Try the candidates of guesses at once on the pool, for puzzles at least
+	 * PARALLEL_GUESS_WIDTH wide, or one after another if the pool is null.
+	 */
+	public void setGuessPool(ForkJoinPool guessPool) {
+		this.guessPool = guessPool;
+	}
+
+	/**
+	 * Keep figures on the work done in stats, adding to what is already
+	 * there, or stop keeping them if stats is null.
+	 */
+	public void setStats(SolveStats stats) {
+		this.stats = stats;
 	}
 
 	/** Attempt to solve the puzzle. */
 	public void solve() throws InconsistentPuzzleError {
+		solve(Strategy.PROPAGATE);
+	}
+
+	/**
+	 * Attempt to solve the puzzle, giving up once the deadline expires, as
+	 * solve(Strategy, Deadline) does.
+	 */
+	public SolveStatus solve(Deadline deadline) throws InconsistentPuzzleError {
+		return solve(Strategy.PROPAGATE, deadline);
+	}
+
+	/** Attempt to solve the puzzle using the given strategy. */
+	public void solve(Strategy strategy) throws InconsistentPuzzleError {
+		solve(strategy, null);
+	}
+
+	/**
+	 * Attempt to solve the puzzle using the given strategy, giving up once
+	 * the deadline expires, or never if it is null. The deadline is checked
+	 * between the sections of a propagation, before each guess and at every
+	 * search node. Returns TIMED_OUT if it expired first: PROPAGATE leaves
+	 * the candidates eliminated so far, and the searches leave the puzzle as
+	 * it was.
+	 */
+	public SolveStatus solve(Strategy strategy, Deadline deadline)
+			throws InconsistentPuzzleError {
+		long start = stats != null ? System.nanoTime() : 0;
+		setDeadline(deadline);
+		try {
+			solveWith(strategy);
+		} finally {
+			setDeadline(null);
+			if (stats != null) {
+				stats.solveNanos += System.nanoTime() - start;
+			}
+		}
+		if (isSolved()) {
+			return SolveStatus.SOLVED;
+		}
+		if (deadline != null && deadline.isExpired()) {
+			return SolveStatus.TIMED_OUT;
+		}
+		return SolveStatus.UNSOLVED;
+	}
+
+	/** Solve the puzzle using the given strategy, without timing it. */
+	private void solveWith(Strategy strategy) throws InconsistentPuzzleError {
+		if (strategy == Strategy.SEARCH) {
+			search();
+			return;
+		}
+		if (strategy == Strategy.DANCING_LINKS) {
+			DancingLinks links = new DancingLinks(getValues(),
+					geometry.getRegions());
+			int[] solution = links.solve(deadline);
+			if (solution == null) {
+				nodesVisited = links.getNodesVisited();
+				if (isStopped()) {
+					return;
+				}
+				throw (new InconsistentPuzzleError());
+			}
+			useSolution(solution, links.getNodesVisited());
+			return;
+		}
+		nodesVisited = 0;
 		prune();
-		while (!isSolved()) {
+		while (!isSolved() && !isStopped()) {
 			if (!isConsistent()) {
 				throw (new InconsistentPuzzleError());
 			}
 			int candidates = countCandidates();
-			for (int i = 0; i < squares.length; i++) {
+			for (int i = 0; i < squares.length && !isStopped(); i++) {
 				if (squares[i].countCandidates() == 2) {
 					List<Integer> possible = guessByIndex(i);
 					squares[i].setCandidates(possible);
@@ -317,7 +875,20 @@ public class Puzzle {
 		}
 	}
 
+	/** Roll the squares back to the state they were in at the mark. */
+	public void undo(int mark) {
+		trail.undo(mark);
+	}
+
+	/** Fix every square to its value in a solution found elsewhere. */
+	void useSolution(int[] solution, long nodesVisited) {
+		for (int i = 0; i < squares.length; i++) {
+			squares[i].fix(solution[i]);
+		}
+		this.nodesVisited = nodesVisited;
+	}
+
 	public String toString() {
-		return new PuzzleDumper(this, rows, width).dump();
+		return new PuzzleDumper(this, geometry.getWidth()).dump();
 	}
-}
\ No newline at end of file
+}
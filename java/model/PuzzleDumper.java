@@ -1,106 +1,246 @@
 package sudoku.model;
 
+import java.io.IOException;
+
 public class PuzzleDumper {
+
+	/**
+	 * Get the borders of a geometry, working them out the first time. They
+	 * are kept on the geometry, so they go when it does.
+	 */
+	private static Borders getBorders(PuzzleGeometry geometry) {
+		Borders borders = geometry.getBorders();
+		if (borders == null) {
+			borders = new Borders(geometry);
+			geometry.setBorders(borders);
+		}
+		return borders;
+	}
+
 	private Puzzle puzzle;
-	private Square[][] rows;
+	/** Symbol of each value, starting from 1 at index 0, or null for numbers. */
+	private String[] symbols;
 	private int vwidth;
 
-	public PuzzleDumper(Puzzle puzzle, Square[][] rows, int width) {
+	public PuzzleDumper(Puzzle puzzle, int width) {
 		this.puzzle = puzzle;
-		this.rows = rows;
-		if (width < 10) {
+		vwidth = Integer.toString(width).length();
+	}
+
+	/** Dump the puzzle using the given symbols for its values. */
+	public PuzzleDumper(Puzzle puzzle, String[] symbols) {
+		this(puzzle, puzzle.getGeometry().getWidth());
+		if (symbols != null) {
+			this.symbols = symbols;
 			vwidth = 1;
-		} else {
-			vwidth = 2;
+			for (String symbol : symbols) {
+				vwidth = Math.max(vwidth, symbol.length());
+			}
+		}
+	}
+
+	/** Write count copies of a character. */
+	private static void repeat(Appendable out, char letter, int count)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.append(letter);
 		}
 	}
 
 	/** Determine which character to print. */
 	public String corner(Square square, Square rsquare, Square dsquare,
 			Square csquare) {
-		boolean r = puzzle.inSameRegion(square, rsquare);
-		boolean d = puzzle.inSameRegion(square, dsquare);
-		boolean c = puzzle.inSameRegion(square, csquare);
-		boolean rs = puzzle.inSameRegion(rsquare, csquare);
+		return String.valueOf(corner(puzzle.inSameRegion(square, rsquare),
+				puzzle.inSameRegion(square, dsquare), puzzle.inSameRegion(
+						square, csquare), puzzle.inSameRegion(rsquare,
+						csquare)));
+	}
+
+	/**
+	 * Determine the corner between four squares from whether the square is in
+	 * the same region as the squares to its right, below it and diagonally
+	 * across, and whether the right square is in the same region as the
+	 * diagonal one.
+	 */
+	private static char corner(boolean r, boolean d, boolean c, boolean rs) {
 		if (r && d && c) {
-			return " ";
+			return ' ';
 		}
 		if (r && !(d || c || rs)) {
-			return "-";
+			return '-';
 		}
 		if (d && rs && !(r && c)) {
-			return "|";
+			return '|';
 		}
-		return "+";
+		return '+';
 	}
 
 	/** Determine which divider to use. */
 	public String divider(Square[] row, Square[] nextRow) {
-		String result = "";
-		Square square = null, rsquare, csquare, dsquare = null;
-		for (int i = 0; i < row.length - 1; i++) {
+		StringBuilder result = new StringBuilder();
+		Square square, rsquare, csquare, dsquare;
+		int i;
+		for (i = 0; i < row.length - 1; i++) {
 			square = row[i];
 			rsquare = row[i + 1];
 			dsquare = nextRow[i];
 			csquare = nextRow[i + 1];
-			result += seperator(square, dsquare);
-			result += corner(square, rsquare, dsquare, csquare);
+			result.append(seperator(square, dsquare));
+			result.append(corner(square, rsquare, dsquare, csquare));
 		}
-		result += seperator(square, dsquare);
-		return result;
+		result.append(seperator(row[i], nextRow[i]));
+		return result.toString();
 	}
 
 	/** Dump the puzzle. */
 	public String dump() {
-		String result = "";
-		for (int i = 0; i < rows.length - 1; i++) {
-			result += formatRow(rows[i]) + "\n";
-			String divider = divider(rows[i], rows[i + 1]);
-			if (divider.contains("-")) {
-				result += divider + "\n";
+		StringBuilder result = new StringBuilder();
+		try {
+			dump(result);
+		} catch (IOException error) {
+			// A StringBuilder does not throw.
+			throw (new IllegalStateException(error));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Write the puzzle to out, without a trailing newline. The borders are
+	 * worked out once per geometry, and nothing is allocated per square.
+	 */
+	public void dump(Appendable out) throws IOException {
+		Borders borders = getBorders(puzzle.getGeometry());
+		Square[] squares = puzzle.getSquares();
+		int width = borders.width;
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < width; j++) {
+				formatSquare(squares[i * width + j], out);
+				if (j < width - 1) {
+					out.append(borders.gaps[i][j]);
+				}
+			}
+			if (i < width - 1) {
+				out.append('\n');
+				if (borders.hasDivider[i]) {
+					for (int j = 0; j < width; j++) {
+						repeat(out, borders.dashes[i][j] ? '-' : ' ', vwidth);
+						if (j < width - 1) {
+							out.append(borders.corners[i][j]);
+						}
+					}
+					out.append('\n');
+				}
 			}
 		}
-		return result + formatRow(rows[rows.length - 1]);
 	}
 
 	/** Format the rows. */
 	public String formatRow(Square[] row) {
-		String result = "";
+		StringBuilder result = new StringBuilder();
 		int i;
 		for (i = 0; i < row.length - 1; i++) {
-			result += formatSquare(row[i]);
+			result.append(formatSquare(row[i]));
 			if (puzzle.inSameRegion(row[i], row[i + 1])) {
-				result += " ";
+				result.append(' ');
 			} else {
-				result += "|";
+				result.append('|');
 			}
 		}
-		return result + formatSquare(row[i]);
+		return result.append(formatSquare(row[i])).toString();
 	}
 
-	/** Format the squares. */
+	/**
+	 * Format the squares, right-justified. Squares that are not fixed are
+	 * shown as '.'.
+	 */
 	public String formatSquare(Square square) {
-		String result = "";
-		if (square.isFixed()) {
-			for (int i = 0; i < vwidth; i++) {
-				result += " ";
-			}
+		StringBuilder result = new StringBuilder(vwidth);
+		try {
+			formatSquare(square, result);
+		} catch (IOException error) {
+			throw (new IllegalStateException(error));
+		}
+		return result.toString();
+	}
+
+	/** Write a square, right-justified. */
+	private void formatSquare(Square square, Appendable out)
+			throws IOException {
+		if (!square.isFixed()) {
+			repeat(out, ' ', vwidth - 1);
+			out.append('.');
+			return;
+		}
+		int value = square.getValue();
+		if (symbols != null && value >= 1 && value <= symbols.length) {
+			String symbol = symbols[value - 1];
+			repeat(out, ' ', vwidth - symbol.length());
+			out.append(symbol);
+			return;
+		}
+		int power = 1;
+		int digits = 1;
+		while (power <= value / 10) {
+			power *= 10;
+			digits++;
+		}
+		repeat(out, ' ', vwidth - digits);
+		for (; power > 0; power /= 10) {
+			out.append((char) ('0' + value / power % 10));
 		}
-		return "" + square.getValue();
 	}
 
 	/** Determine which seperator to use. */
 	private String seperator(Square square, Square dsquare) {
-		String result = "";
-		if (puzzle.inSameRegion(square, dsquare)) {
-			for (int j = 0; j < vwidth; j++) {
-				result += " ";
+		StringBuilder result = new StringBuilder(vwidth);
+		char letter = puzzle.inSameRegion(square, dsquare) ? ' ' : '-';
+		for (int j = 0; j < vwidth; j++) {
+			result.append(letter);
+		}
+		return result.toString();
+	}
+
+	/** The region borders of a geometry, whatever the width of the values. */
+	static class Borders {
+		/** Corner below and to the right of each square. */
+		final char[][] corners;
+		/** Whether each square has a border below it. */
+		final boolean[][] dashes;
+		/** Character to the right of each square. */
+		final char[][] gaps;
+		/** Whether there is any border below each row. */
+		final boolean[] hasDivider;
+		final int width;
+
+		Borders(PuzzleGeometry geometry) {
+			width = geometry.getWidth();
+			gaps = new char[width][Math.max(width - 1, 0)];
+			corners = new char[Math.max(width - 1, 0)][Math.max(width - 1, 0)];
+			dashes = new boolean[Math.max(width - 1, 0)][width];
+			hasDivider = new boolean[Math.max(width - 1, 0)];
+			for (int i = 0; i < width; i++) {
+				for (int j = 0; j < width - 1; j++) {
+					int square = i * width + j;
+					gaps[i][j] = geometry.inSameRegion(square, square + 1) ? ' '
+							: '|';
+				}
 			}
-		} else {
-			for (int j = 0; j < vwidth; j++) {
-				result += "-";
+			for (int i = 0; i < width - 1; i++) {
+				for (int j = 0; j < width; j++) {
+					int square = i * width + j;
+					dashes[i][j] = !geometry.inSameRegion(square, square
+							+ width);
+					hasDivider[i] |= dashes[i][j];
+					if (j < width - 1) {
+						corners[i][j] = corner(geometry.inSameRegion(square,
+								square + 1), geometry.inSameRegion(square,
+								square + width), geometry.inSameRegion(square,
+								square + width + 1), geometry.inSameRegion(
+								square + 1, square + width + 1));
+						hasDivider[i] |= corners[i][j] == '-';
+					}
+				}
 			}
 		}
-		return result;
 	}
 }
@@ -44,18 +44,33 @@ public class PuzzleFactory {
 
 	public static Puzzle makePuzzle(int[] squares, int rheight, int rwidth)
 			throws InvalidPuzzleError {
+		int width = rheight * rwidth;
+		if (rheight > 0 && rwidth > 0
+				&& (long) width * width == squares.length) {
+			// Boxes always make a valid layout.
+			return new Puzzle(squares, PuzzleGeometry.get(rheight, rwidth));
+		}
 		return makePuzzle(squares, dimsToRegions(rheight, rwidth));
 	}
 
 	public static Puzzle makePuzzle(int[] squares, int[][] regions)
 			throws InvalidPuzzleError {
-		checkValidity(squares, regions);
-		return new Puzzle(squares, regions);
+		return new Puzzle(squares, validate(squares, regions));
 	}
 
 	/** Make sure that the puzzle description is a valid puzzle. */
 	protected static void checkValidity(int[] squares, int[][] regions)
 			throws InvalidPuzzleError {
+		validate(squares, regions);
+	}
+
+	/**
+	 * Make sure that the puzzle description is a valid puzzle, and get its
+	 * geometry. Every square must be in exactly one region; a layout that has
+	 * passed once is not checked again.
+	 */
+	private static PuzzleGeometry validate(int[] squares, int[][] regions)
+			throws InvalidPuzzleError {
 		// Check that width makes sense
 		int width = (int) sqrt(squares.length);
 		int size = width * width;
@@ -68,37 +83,34 @@ public class PuzzleFactory {
 			throw (new InvalidPuzzleError("There must be exactly " + width
 					+ " regions."));
 		}
-		for (int i = 0; i < width; i++) {
+		PuzzleGeometry geometry = PuzzleGeometry.find(regions);
+		if (geometry != null && geometry.isValidated()) {
+			return geometry;
+		}
+		// There are as many memberships as squares, so if none is repeated
+		// every square is in a region.
+		long[] seen = new long[(size + 63) / 64];
+		for (int[] region : regions) {
 			// Check that the region is the right size
-			if (regions[i].length != width) {
+			if (region.length != width) {
 				throw (new InvalidPuzzleError("All regions must have exactly "
 						+ width + " squares."));
 			}
-			for (int j = 0; j < width; j++) {
-				if (regions[i][j] >= width * width) {
+			for (int square : region) {
+				if (square < 0 || square >= size) {
 					throw (new InvalidPuzzleError("There is no square number "
-							+ regions[i][j] + "."));
+							+ square + "."));
 				}
-			}
-		}
-		// Check that all squares are members of one region.
-		for (int target = 0; target < squares.length; target++) {
-			boolean found = false;
-			for (int[] region : regions) {
-				for (int candidate : region) {
-					if (candidate == target) {
-						found = true;
-						break;
-					}
+				long bit = 1L << square;
+				if ((seen[square >>> 6] & bit) != 0) {
+					throw (new InvalidPuzzleError("Square " + square
+							+ " is a member of more than one region."));
 				}
-				if (found) {
-					break;
-				}
-			}
-			if (!found) {
-				throw (new InvalidPuzzleError(
-						"Not all squares are members of a region."));
+				seen[square >>> 6] |= bit;
 			}
 		}
+		geometry = PuzzleGeometry.get(regions);
+		geometry.setValidated();
+		return geometry;
 	}
 }
@@ -157,6 +157,33 @@ public class PuzzleFactoryTest {
 				{ 0, 1, 2 }, { 3 } });
 		expectInvalidPuzzleError(new int[] { 1, 2, 3, 4 }, new int[][] {
 				{ 0, 1 }, { 1, 2 } });
+		expectInvalidPuzzleError(new int[] { 1, 2, 3, 4 }, new int[][] {
+				{ 0, -1 }, { 2, 3 } });
+	}
+
+	@Test
+	public void checkValidity() throws InvalidPuzzleError {
+		int[] squares = new int[16];
+		int[][] regions = { { 0, 1, 4, 5 }, { 2, 3, 6, 7 }, { 8, 9, 12, 13 },
+				{ 10, 11, 14, 15 } };
+		PuzzleFactory.checkValidity(squares, regions);
+		// The layout is remembered, but a different one is still checked.
+		PuzzleFactory.checkValidity(squares, regions);
+		regions[3][3] = 13;
+		try {
+			PuzzleFactory.checkValidity(squares, regions);
+			fail("Square 13 is in two regions.");
+		} catch (InvalidPuzzleError error) {
+			assertEquals("Square 13 is a member of more than one region.",
+					error.getMessage());
+		}
+		regions[3][3] = -15;
+		try {
+			PuzzleFactory.checkValidity(squares, regions);
+			fail("There is no square -15.");
+		} catch (InvalidPuzzleError error) {
+			assertEquals("There is no square number -15.", error.getMessage());
+		}
 	}
 
 	public void expectInvalidPuzzleError(int[] squares) {
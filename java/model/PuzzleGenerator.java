@@ -0,0 +1,147 @@
+package sudoku.model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import mapfile.ReadError;
+import sudoku.io.LineFormat;
+import sudoku.io.SdkReader;
+
+/**
+ * Makes puzzles with a unique solution for any geometry, irregular ones
+ * included. Each puzzle starts as a random full grid, and clues are taken
+ * away in random order as long as the solution stays unique, which leaves a
+ * minimal puzzle. Puzzles are made in parallel, each from its own seed, so
+ * the same seed always gives the same puzzles.
+ */
+public class PuzzleGenerator {
+
+	/**
+	 * Make the number of puzzles given by the first argument, with the
+	 * symmetry named by the second, for the geometry of each .sdk file named
+	 * after them. The puzzles are written to stdout one per line, and the
+	 * rate for each file to stderr.
+	 */
+	public static void main(String[] args) throws FileNotFoundException,
+			ReadError, InvalidPuzzleError, InterruptedException {
+		int count = Integer.parseInt(args[0]);
+		Symmetry symmetry = Symmetry.valueOf(args[1].toUpperCase());
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		for (int i = 2; i < args.length; i++) {
+			PuzzleGeometry geometry = new SdkReader(new File(args[i])).read()
+					.getGeometry();
+			PuzzleGenerator generator = new PuzzleGenerator(geometry,
+					symmetry, parallelism);
+			long start = System.nanoTime();
+			List<Puzzle> puzzles = generator.generate(count, start);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			generator.shutdown();
+			for (Puzzle puzzle : puzzles) {
+				System.out.println(LineFormat.format(puzzle.getSquares()));
+			}
+			System.err.printf("%s: %d %dx%d puzzles in %.3f s (%.2f puzzles/s)%n",
+					args[i], count, geometry.getWidth(), geometry.getWidth(),
+					seconds, count / seconds);
+		}
+	}
+
+	private PuzzleGeometry geometry;
+	private ForkJoinPool pool;
+	private Symmetry symmetry;
+
+	public PuzzleGenerator(PuzzleGeometry geometry, Symmetry symmetry,
+			int parallelism) {
+		this.geometry = geometry;
+		this.symmetry = symmetry;
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Make a random full grid. The first region is filled with a random
+	 * permutation, which is always possible, and the rest is solved with the
+	 * rows of the dancing links matrix shuffled.
+	 */
+	public int[] fullGrid(Random random) {
+		int width = geometry.getWidth();
+		int[] values = new int[geometry.getSize()];
+		int[] region = geometry.getRegions()[0];
+		for (int i = 0; i < width; i++) {
+			int j = random.nextInt(i + 1);
+			values[region[i]] = values[region[j]];
+			values[region[j]] = i + 1;
+		}
+		DancingLinks links = new DancingLinks(values, geometry.getRegions());
+		links.shuffle(random);
+		return links.solve();
+	}
+
+	/** Make a minimal puzzle with a unique solution. */
+	public int[] generate(Random random) {
+		int[] values = fullGrid(random);
+		int width = geometry.getWidth();
+		int[] order = new int[values.length];
+		for (int i = 0; i < order.length; i++) {
+			int j = random.nextInt(i + 1);
+			order[i] = order[j];
+			order[j] = i;
+		}
+		for (int index : order) {
+			int partner = symmetry.partner(index, width);
+			if (values[index] == 0 || values[partner] == 0) {
+				continue;
+			}
+			int value = values[index];
+			int partnerValue = values[partner];
+			values[index] = values[partner] = 0;
+			if (!isUnique(values)) {
+				values[index] = value;
+				values[partner] = partnerValue;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Make count puzzles in parallel. The puzzle at position i is made from
+	 * seed + i, whatever the parallelism.
+	 */
+	public List<Puzzle> generate(int count, long seed)
+			throws InterruptedException {
+		List<Future<int[]>> pending = new ArrayList<Future<int[]>>(count);
+		for (int i = 0; i < count; i++) {
+			final Random random = new Random(seed + i);
+			pending.add(pool.submit(new Callable<int[]>() {
+				public int[] call() {
+					return generate(random);
+				}
+			}));
+		}
+		List<Puzzle> puzzles = new ArrayList<Puzzle>(count);
+		for (Future<int[]> values : pending) {
+			try {
+				puzzles.add(new Puzzle(values.get(), geometry));
+			} catch (ExecutionException error) {
+				throw (new RuntimeException(error.getCause()));
+			}
+		}
+		return puzzles;
+	}
+
+	/** Check if the values have exactly one solution. */
+	private boolean isUnique(int[] values) {
+		return new DancingLinks(values, geometry.getRegions())
+				.countSolutions(2) == 1;
+	}
+
+	/** Stop the pool once no more puzzles will be asked for. */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
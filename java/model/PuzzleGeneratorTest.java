@@ -0,0 +1,85 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PuzzleGeneratorTest {
+
+	static final PuzzleGeometry SQUIGGLY = PuzzleGeometry
+			.get(new int[][] { { 0, 1, 9, 10, 18, 19, 27, 28, 36 },
+					{ 2, 3, 4, 11, 12, 13, 20, 21, 22 },
+					{ 5, 6, 7, 8, 14, 15, 16, 17, 23 },
+					{ 24, 25, 26, 32, 33, 34, 35, 42, 43 },
+					{ 29, 30, 31, 39, 40, 41, 49, 50, 51 },
+					{ 37, 38, 45, 46, 47, 48, 54, 55, 56 },
+					{ 57, 63, 64, 65, 66, 72, 73, 74, 75 },
+					{ 58, 59, 60, 67, 68, 69, 76, 77, 78 },
+					{ 44, 52, 53, 61, 62, 70, 71, 79, 80 } });
+
+	/** Check that a puzzle is unique and minimal, with symmetric clues. */
+	private void checkPuzzle(int[] values, PuzzleGeometry geometry,
+			Symmetry symmetry) {
+		int width = geometry.getWidth();
+		assertTrue(new Puzzle(values, geometry).hasUniqueSolution());
+		for (int i = 0; i < values.length; i++) {
+			int partner = symmetry.partner(i, width);
+			assertEquals(values[i] == 0, values[partner] == 0);
+			if (values[i] != 0) {
+				int[] fewer = values.clone();
+				fewer[i] = fewer[partner] = 0;
+				assertFalse(new Puzzle(fewer, geometry).hasUniqueSolution());
+			}
+		}
+	}
+
+	@Test
+	public void fullGrid() {
+		PuzzleGenerator generator = new PuzzleGenerator(SQUIGGLY,
+				Symmetry.NONE, 1);
+		int[] values = generator.fullGrid(new Random(1));
+		Puzzle puzzle = new Puzzle(values, SQUIGGLY);
+		assertTrue(puzzle.isSolved());
+		assertFalse(puzzle.hasConflicts());
+		generator.shutdown();
+	}
+
+	@Test
+	public void generate() throws InvalidPuzzleError, InterruptedException {
+		PuzzleGeometry nine = PuzzleFactory.makePuzzle(new int[81])
+				.getGeometry();
+		for (Symmetry symmetry : Symmetry.values()) {
+			PuzzleGenerator generator = new PuzzleGenerator(SQUIGGLY,
+					symmetry, 2);
+			for (Puzzle puzzle : generator.generate(3, 42)) {
+				checkPuzzle(puzzle.getValues(), SQUIGGLY, symmetry);
+			}
+			generator.shutdown();
+			generator = new PuzzleGenerator(nine, symmetry, 2);
+			checkPuzzle(generator.generate(new Random(7)), nine, symmetry);
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	public void sameSeed() throws InvalidPuzzleError, InterruptedException {
+		PuzzleGeometry four = PuzzleFactory.makePuzzle(new int[16])
+				.getGeometry();
+		PuzzleGenerator serial = new PuzzleGenerator(four, Symmetry.NONE, 1);
+		PuzzleGenerator parallel = new PuzzleGenerator(four, Symmetry.NONE, 3);
+		List<Puzzle> expected = serial.generate(5, 3);
+		List<Puzzle> actual = parallel.generate(5, 3);
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i).getValues(), actual.get(i)
+					.getValues());
+		}
+		serial.shutdown();
+		parallel.shutdown();
+	}
+}
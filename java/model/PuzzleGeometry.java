@@ -0,0 +1,286 @@
+package sudoku.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The layout of a puzzle: which squares make up each row, column and region.
+ * Geometries never change, so puzzles with the same region description
+ * usually share one instance. Up to CACHE_SIZE box layouts, and as many
+ * others, are kept; one built again after being dropped is equal to the old
+ * one. The arrays handed out must not be modified.
+ */
+public class PuzzleGeometry {
+
+	/** Most geometries of each kind kept for sharing. */
+	public static final int CACHE_SIZE = 64;
+
+	/** Geometries of box layouts, by box height and width. */
+	private static final ConcurrentMap<Long, PuzzleGeometry> BOXES = new ConcurrentHashMap<Long, PuzzleGeometry>();
+	/** Geometries already built, by region description. */
+	private static final ConcurrentMap<Key, PuzzleGeometry> CACHE = new ConcurrentHashMap<Key, PuzzleGeometry>();
+
+	/** Get the geometry for the given region indices if it is already built. */
+	static PuzzleGeometry find(int[][] regions) {
+		return CACHE.get(new Key(regions));
+	}
+
+	/**
+	 * Get the geometry for the given region indices. The width of the puzzle
+	 * is the number of regions.
+	 */
+	public static PuzzleGeometry get(int[][] regions) {
+		PuzzleGeometry geometry = find(regions);
+		if (geometry != null) {
+			return geometry;
+		}
+		geometry = findBox(regions);
+		if (geometry != null) {
+			return share(CACHE, new Key(geometry.regions), geometry);
+		}
+		int[][] copy = new int[regions.length][];
+		for (int i = 0; i < regions.length; i++) {
+			copy[i] = regions[i].clone();
+		}
+		return share(CACHE, new Key(copy), new PuzzleGeometry(copy));
+	}
+
+	/**
+	 * Get the geometry whose regions are boxes of the given height and width,
+	 * as PuzzleFactory lays them out, without hashing the region description.
+	 */
+	public static PuzzleGeometry get(int height, int width) {
+		Long key = (long) height << 32 | width;
+		PuzzleGeometry geometry = BOXES.get(key);
+		if (geometry == null) {
+			geometry = share(BOXES, key, get(PuzzleFactory.dimsToRegions(
+					height, width)));
+		}
+		return geometry;
+	}
+
+	/**
+	 * Get the shared geometry of a box layout with the given regions, if
+	 * there is one. The width of the boxes is the run of indices the first
+	 * region starts with.
+	 */
+	private static PuzzleGeometry findBox(int[][] regions) {
+		if (regions.length == 0) {
+			return null;
+		}
+		int width = 1;
+		while (width < regions[0].length && regions[0][width] == width) {
+			width++;
+		}
+		if (regions.length % width != 0) {
+			return null;
+		}
+		long key = (long) (regions.length / width) << 32 | width;
+		PuzzleGeometry geometry = BOXES.get(key);
+		if (geometry == null || !Arrays.deepEquals(regions, geometry.regions)) {
+			return null;
+		}
+		return geometry;
+	}
+
+	/**
+	 * Add a geometry to a cache, dropping an arbitrary one first if it is
+	 * full, and return the one kept for the key.
+	 */
+	private static <K> PuzzleGeometry share(
+			ConcurrentMap<K, PuzzleGeometry> cache, K key,
+			PuzzleGeometry geometry) {
+		if (cache.size() >= CACHE_SIZE) {
+			Iterator<K> keys = cache.keySet().iterator();
+			if (keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		PuzzleGeometry existing = cache.putIfAbsent(key, geometry);
+		return existing == null ? geometry : existing;
+	}
+
+	/** Region borders for PuzzleDumper, worked out when first dumped. */
+	private volatile PuzzleDumper.Borders borders;
+	/**
+	 * Box height and width, or an empty array if the regions are not boxes.
+	 * Worked out when first asked for.
+	 */
+	private volatile int[] box;
+	/** Hash of the region description. */
+	private final int hash;
+	/** Squares that share a row, column or region with each square. */
+	private final int[][] peers;
+	/** Region of each square. */
+	private final int[] regionOf;
+	/** Square indices of each region. */
+	private final int[][] regions;
+	/** Square indices of all rows, then all columns, then all regions. */
+	private final int[][] sections;
+	/** Number of squares. */
+	private final int size;
+	/** Row, column and region section of each square. */
+	private final int[][] squareSections;
+	/** Whether PuzzleFactory has checked the layout. */
+	private volatile boolean validated;
+	/** Width of the puzzle. */
+	private final int width;
+
+	private PuzzleGeometry(int[][] regions) {
+		this.regions = regions;
+		hash = Arrays.deepHashCode(regions);
+		width = regions.length;
+		size = width * width;
+		sections = new int[width * 3][width];
+		squareSections = new int[size][3];
+		regionOf = new int[size];
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < width; j++) {
+				sections[i][j] = i * width + j;
+				sections[i + width][j] = j * width + i;
+				sections[i + 2 * width][j] = regions[i][j];
+				squareSections[i * width + j][0] = i;
+				squareSections[j * width + i][1] = i + width;
+				squareSections[regions[i][j]][2] = i + 2 * width;
+				regionOf[regions[i][j]] = i;
+			}
+		}
+		peers = new int[size][];
+		boolean[] seen = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			int[] found = new int[3 * width];
+			int count = 0;
+			for (int section : squareSections[i]) {
+				for (int peer : sections[section]) {
+					if (peer != i && !seen[peer]) {
+						seen[peer] = true;
+						found[count] = peer;
+						count++;
+					}
+				}
+			}
+			peers[i] = Arrays.copyOf(found, count);
+			for (int peer : peers[i]) {
+				seen[peer] = false;
+			}
+		}
+	}
+
+	/** Geometries are equal if they have the same region description. */
+	public boolean equals(Object that) {
+		return this == that || that instanceof PuzzleGeometry
+				&& hash == ((PuzzleGeometry) that).hash
+				&& Arrays.deepEquals(regions, ((PuzzleGeometry) that).regions);
+	}
+
+	/** Get the borders PuzzleDumper worked out, or null. */
+	PuzzleDumper.Borders getBorders() {
+		return borders;
+	}
+
+	/**
+	 * Get the height and width of the boxes, if the regions are the boxes
+	 * PuzzleFactory makes from region dimensions. Returns null otherwise.
+	 */
+	public int[] getBox() {
+		int[] result = box;
+		if (result == null) {
+			result = new int[0];
+			for (int height = 1; height <= width; height++) {
+				if (width % height == 0
+						&& Arrays.deepEquals(regions, PuzzleFactory
+								.dimsToRegions(height, width / height))) {
+					result = new int[] { height, width / height };
+					break;
+				}
+			}
+			box = result;
+		}
+		return result.length == 0 ? null : result;
+	}
+
+	/** Get the squares that share a row, column or region with a square. */
+	public int[] getPeers(int index) {
+		return peers[index];
+	}
+
+	/** Get the region a square index belongs to. */
+	public int getRegion(int index) {
+		return regionOf[index];
+	}
+
+	/** Get the square indices of every region. */
+	public int[][] getRegions() {
+		return regions;
+	}
+
+	/** Get the square indices of a row, column or region. */
+	public int[] getSection(int section) {
+		return sections[section];
+	}
+
+	/** Get the row, column and region sections of a square. */
+	public int[] getSectionsOf(int index) {
+		return squareSections[index];
+	}
+
+	/** Count the rows, columns and regions. */
+	public int getSectionCount() {
+		return sections.length;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	/** Check if the squares at two indices are in the same region. */
+	public boolean inSameRegion(int i, int j) {
+		return regionOf[i] == regionOf[j];
+	}
+
+	/** Check if PuzzleFactory has checked the layout. */
+	boolean isValidated() {
+		return validated;
+	}
+
+	/** Keep the borders PuzzleDumper worked out. */
+	void setBorders(PuzzleDumper.Borders borders) {
+		this.borders = borders;
+	}
+
+	/** Note that PuzzleFactory has checked the layout. */
+	void setValidated() {
+		validated = true;
+	}
+
+	/** Region description compared by content, for the cache. */
+	private static class Key {
+		private final int hash;
+		private final int[][] regions;
+
+		Key(int[][] regions) {
+			this.regions = regions;
+			hash = Arrays.deepHashCode(regions);
+		}
+
+		public boolean equals(Object that) {
+			return that instanceof Key && hash == ((Key) that).hash
+					&& Arrays.deepEquals(regions, ((Key) that).regions);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PuzzleGeometryTest {
+
+	@Test
+	public void bounded() {
+		PuzzleGeometry first = PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				1, 1));
+		for (int width = 2; width <= PuzzleGeometry.CACHE_SIZE + 8; width++) {
+			PuzzleGeometry.get(PuzzleFactory.dimsToRegions(1, width));
+		}
+		PuzzleGeometry again = PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				1, 1));
+		assertEquals(first, again);
+		assertEquals(first.hashCode(), again.hashCode());
+	}
+
+	@Test
+	public void box() {
+		assertArrayEquals(new int[] { 3, 3 }, PuzzleGeometry.get(
+				PuzzleFactory.dimsToRegions(3, 3)).getBox());
+		assertArrayEquals(new int[] { 2, 3 }, PuzzleGeometry.get(
+				PuzzleFactory.dimsToRegions(2, 3)).getBox());
+		assertNull(PuzzleGeneratorTest.SQUIGGLY.getBox());
+	}
+
+	@Test
+	public void shared() throws InvalidPuzzleError {
+		int[][] regions = PuzzleFactory.dimsToRegions(2, 3);
+		PuzzleGeometry geometry = PuzzleGeometry.get(regions);
+		assertSame(geometry, PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				2, 3)));
+		assertNotSame(geometry, PuzzleGeometry.get(PuzzleFactory
+				.dimsToRegions(3, 2)));
+		regions[0][0] = 35;
+		assertSame(geometry, PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				2, 3)));
+		assertSame(geometry, PuzzleGeometry.get(2, 3));
+		Puzzle puzzle = PuzzleFactory.makePuzzle(new int[36], 2, 3);
+		assertSame(geometry, puzzle.getGeometry());
+		assertSame(geometry, puzzle.clone().getGeometry());
+	}
+
+	@Test
+	public void tables() {
+		PuzzleGeometry geometry = PuzzleGeometry.get(PuzzleFactory
+				.dimsToRegions(3, 3));
+		assertEquals(9, geometry.getWidth());
+		assertEquals(81, geometry.getSize());
+		assertEquals(27, geometry.getSectionCount());
+		assertArrayEquals(new int[] { 1, 10, 18 }, geometry.getSectionsOf(10));
+		assertEquals(0, geometry.getRegion(10));
+		assertEquals(8, geometry.getRegion(80));
+		for (int i = 0; i < geometry.getSize(); i++) {
+			assertEquals(20, geometry.getPeers(i).length);
+		}
+	}
+}
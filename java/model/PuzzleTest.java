@@ -6,15 +6,26 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
 public class PuzzleTest {
 
-	private Puzzle four, six, nine, twelve, sixteen, twentyFive, squiggly;
+	private Puzzle four, six, nine, twelve, sixteen, twentyFive, squiggly,
+			escargot;
 
 	@Before
 	public void setup() throws InvalidPuzzleError {
@@ -98,6 +109,39 @@ public class PuzzleTest {
 				{ 57, 63, 64, 65, 66, 72, 73, 74, 75 },
 				{ 58, 59, 60, 67, 68, 69, 76, 77, 78 },
 				{ 44, 52, 53, 61, 62, 70, 71, 79, 80 } });
+		escargot = PuzzleFactory.makePuzzle(new int[] { 1, 0, 0, 0, 0, 7, 0,
+				9, 0, 0, 3, 0, 0, 2, 0, 0, 0, 8, 0, 0, 9, 6, 0, 0, 5, 0, 0, 0,
+				0, 5, 3, 0, 0, 9, 0, 0, 0, 1, 0, 0, 8, 0, 0, 0, 2, 6, 0, 0, 0,
+				0, 4, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 1, 0, 0, 4, 0, 0, 0, 0, 0,
+				0, 7, 0, 0, 7, 0, 0, 0, 3, 0, 0 });
+	}
+
+	@Test
+	public void concurrentSizes() throws InterruptedException,
+			ExecutionException {
+		final Puzzle[] puzzles = { four, nine, twelve, sixteen };
+		ExecutorService pool = Executors.newFixedThreadPool(puzzles.length * 2);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < puzzles.length * 2; i++) {
+			final Puzzle original = puzzles[i % puzzles.length];
+			results.add(pool.submit(new Callable<Boolean>() {
+				public Boolean call() throws InconsistentPuzzleError {
+					for (int j = 0; j < 50; j++) {
+						Puzzle puzzle = new Puzzle(original.getValues(),
+								original.getGeometry());
+						puzzle.solve(Strategy.SEARCH);
+						if (!puzzle.isSolved() || puzzle.hasConflicts()) {
+							return false;
+						}
+					}
+					return true;
+				}
+			}));
+		}
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get());
+		}
+		pool.shutdown();
 	}
 
 	@Test
@@ -116,6 +160,27 @@ public class PuzzleTest {
 				.countCandidates());
 	}
 
+	@Test
+	public void countSolutions() throws InvalidPuzzleError {
+		Puzzle[] puzzles = { four, six, nine, twelve, sixteen, twentyFive,
+				squiggly, escargot };
+		for (Puzzle puzzle : puzzles) {
+			Puzzle before = puzzle.clone();
+			assertEquals(1, puzzle.countSolutions(10));
+			assertTrue(puzzle.hasUniqueSolution());
+			assertTrue(before.equals(puzzle));
+		}
+		Puzzle empty = PuzzleFactory.makePuzzle(new int[16]);
+		assertEquals(288, empty.countSolutions(1000));
+		assertEquals(10, empty.countSolutions(10));
+		assertEquals(0, empty.countSolutions(0));
+		assertFalse(empty.hasUniqueSolution());
+		assertFalse(PuzzleFactory.makePuzzle(new int[256]).hasUniqueSolution());
+		Puzzle bad = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 1 });
+		assertEquals(0, bad.countSolutions(2));
+	}
+
 	@Test
 	public void countEachPossibility() {
 		int[][] startValues = new int[][] { { 6 }, { 1 }, { 2, 3, 4, 5 },
@@ -128,6 +193,80 @@ public class PuzzleTest {
 		assertArrayEquals(counts, Puzzle.countEachPossibility(section));
 	}
 
+	@Test
+	public void dancingLinks() throws InvalidPuzzleError,
+			InconsistentPuzzleError {
+		Puzzle[] puzzles = { four, six, nine, twelve, sixteen, twentyFive,
+				squiggly, escargot };
+		for (Puzzle puzzle : puzzles) {
+			Puzzle existing = puzzle.clone();
+			existing.solve();
+			if (!existing.isSolved()) {
+				existing.search();
+			}
+			puzzle.solve(Strategy.DANCING_LINKS);
+			assertTrue(puzzle.isSolved());
+			assertTrue(existing.equals(puzzle));
+		}
+		Puzzle bad = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 1 });
+		try {
+			bad.solve(Strategy.DANCING_LINKS);
+			fail("The puzzle has no solution.");
+		} catch (InconsistentPuzzleError error) {
+		}
+	}
+
+	@Test
+	public void deadline() throws InconsistentPuzzleError {
+		Deadline expired = Deadline.after(0, TimeUnit.NANOSECONDS);
+		for (Strategy strategy : Strategy.values()) {
+			Puzzle copy = twentyFive.clone();
+			assertEquals(SolveStatus.TIMED_OUT, copy.solve(strategy, expired));
+			assertTrue(copy.isConsistent());
+			for (int i = 0; i < copy.getSquares().length; i++) {
+				if (twentyFive.getSquares()[i].isFixed()) {
+					assertEquals(twentyFive.getSquares()[i].getValue(), copy
+							.getSquares()[i].getValue());
+				}
+			}
+		}
+		Deadline token = new Deadline();
+		Deadline child = token.child();
+		assertFalse(child.isExpired());
+		token.cancel();
+		assertTrue(child.isExpired());
+		assertEquals(SolveStatus.TIMED_OUT, sixteen.clone().solve(child));
+		Deadline interrupted = Deadline.onInterrupt();
+		assertFalse(interrupted.isExpired());
+		Thread.currentThread().interrupt();
+		assertTrue(interrupted.isExpired());
+		Thread.interrupted();
+		assertTrue(interrupted.isExpired());
+		assertEquals(SolveStatus.TIMED_OUT, sixteen.clone().solve(interrupted));
+		ParallelSearch search = new ParallelSearch(2, 2);
+		assertEquals(SolveStatus.TIMED_OUT, search.solve(nine.clone(), token));
+		search.shutdown();
+		Deadline later = Deadline.after(1, TimeUnit.MINUTES);
+		assertEquals(SolveStatus.SOLVED, nine.solve(later));
+		assertEquals(SolveStatus.SOLVED, twentyFive.solve(Strategy.SEARCH,
+				later));
+		assertEquals(SolveStatus.UNSOLVED, escargot.solve(later));
+	}
+
+	@Test
+	public void dump() throws IOException {
+		assertEquals("3 .|. 1\n2 .|. .\n---+---\n. .|. 2\n1 .|. 3", four
+				.toString());
+		Puzzle[] puzzles = { four, six, nine, twelve, sixteen, twentyFive,
+				squiggly, escargot };
+		for (Puzzle puzzle : puzzles) {
+			StringBuilder out = new StringBuilder();
+			new PuzzleDumper(puzzle, null).dump(out);
+			assertEquals(puzzle.toString(), out.toString());
+		}
+	}
+
 	@Test
 	public void equals() throws InvalidPuzzleError {
 		Puzzle puzzle1 = PuzzleFactory.makePuzzle(new int[] { 1, 0, 0, 0, 0, 2,
@@ -207,14 +346,14 @@ public class PuzzleTest {
 	public void guessByIndex() throws InvalidPuzzleError {
 		Square[] squares = sixteen.getSquares();
 		int[][] wanted = new int[][] { {}, {}, { 2, 4, 5, 16 }, {},
-				{ 1, 2, 3, 4, 5, 6, 7, 9, 10, 11, 12, 13 }, {},
+				{ 2, 3, 4, 5, 6, 7, 9, 10, 11, 12, 13 }, {},
 				{ 1, 2, 3, 4, 5, 6, 7, 10, 11, 12, 14 }, { 1, 2, 6, 11 },
 				{ 1, 2, 3, 4, 5, 6, 8, 9, 10, 11, 12, 13, 14, 15, 16 },
 				{ 1, 2, 3, 4, 5, 6, 8, 9, 10, 12, 13, 14, 15, 16 },
 				{ 1, 2, 3, 4, 5, 6, 8, 9, 10, 11, 12, 13, 14, 15, 16 },
 				{ 1, 2, 3, 4, 5, 6, 8, 9, 10, 11, 12, 13, 14, 15, 16 }, {},
 				{ 1, 4, 5, 8, 9, 13, 14, 15 }, {},
-				{ 1, 2, 6, 7, 9, 10, 11, 13, 15, 16 } };
+				{ 1, 2, 6, 9, 10, 11, 13, 15, 16 } };
 		for (int i = 0; i < wanted.length; i++) {
 			if (!squares[i].isFixed()) {
 				List<Integer> guesses = sixteen.guessByIndex(i);
@@ -225,6 +364,33 @@ public class PuzzleTest {
 		}
 	}
 
+	@Test
+	public void guessInParallel() throws InconsistentPuzzleError {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Puzzle parallel = sixteen.clone();
+		parallel.setGuessPool(pool);
+		for (int i = 0; i < 32; i++) {
+			if (!sixteen.getSquares()[i].isFixed()) {
+				List<Integer> wanted = sixteen.guessByIndex(i);
+				List<Integer> guesses = parallel.guessByIndex(i);
+				if (wanted.size() > 1) {
+					assertEquals(wanted, guesses);
+				} else {
+					assertEquals(1, guesses.size());
+					assertTrue(guesses.containsAll(wanted));
+				}
+			}
+		}
+		for (Puzzle puzzle : new Puzzle[] { sixteen, twentyFive }) {
+			Puzzle copy = puzzle.clone();
+			copy.setGuessPool(pool);
+			puzzle.solve();
+			copy.solve();
+			assertArrayEquals(puzzle.getValues(), copy.getValues());
+		}
+		pool.shutdown();
+	}
+
 	@Test
 	public void inSameRegion() {
 		for (int i = 0; i < 6; i++) {
@@ -240,6 +406,10 @@ public class PuzzleTest {
 						.getSquares()[i + 1]));
 			}
 		}
+		assertTrue(squiggly.inSameRegion(0, 36));
+		assertFalse(squiggly.inSameRegion(0, 2));
+		assertTrue(squiggly.inSameRegion(44, 80));
+		assertFalse(six.inSameRegion(new Square(1), six.getSquares()[0]));
 	}
 
 	@Test
@@ -270,6 +440,27 @@ public class PuzzleTest {
 				.isSolved());
 	}
 
+	@Test
+	public void markAndUndo() {
+		Puzzle original = sixteen.clone();
+		Square[] squares = sixteen.getSquares();
+		int outer = sixteen.mark();
+		squares[2].fix(squares[2].getFirstCandidate());
+		sixteen.prune();
+		int open = 0;
+		while (squares[open].isFixed()) {
+			open++;
+		}
+		int inner = sixteen.mark();
+		squares[open].getCandidates().clear();
+		assertFalse(sixteen.isConsistent());
+		sixteen.undo(inner);
+		sixteen.undo(outer);
+		for (int i = 0; i < squares.length; i++) {
+			assertTrue(original.getSquares()[i].equals(squares[i]));
+		}
+	}
+
 	@Test
 	public void prune() throws InvalidPuzzleError {
 		six.prune();
@@ -279,12 +470,11 @@ public class PuzzleTest {
 	@Test
 	public void pruneSection() {
 		int[] original = new int[] { 2, 0, 0, 0, 3, 0, 6, 0, 0 };
-		Square.setValues(9);
 		Square[][] sections = new Square[3][9];
 		for (int i = 0; i < sections[0].length; i++) {
-			sections[0][i] = new Square();
+			sections[0][i] = Square.unknown(9);
 			if (original[i] == 0) {
-				sections[1][i] = new Square();
+				sections[1][i] = Square.unknown(9);
 			} else {
 				sections[1][i] = new Square(original[i]);
 			}
@@ -292,7 +482,7 @@ public class PuzzleTest {
 		}
 		Puzzle.pruneSection(sections[0]);
 		for (Square square : sections[0]) {
-			assertTrue(new Square().equals(square));
+			assertTrue(Square.unknown(9).equals(square));
 		}
 		Square wanted = new Square(new int[] { 1, 4, 5, 7, 8, 9 });
 		Puzzle.pruneSection(sections[1]);
@@ -328,6 +518,29 @@ public class PuzzleTest {
 		}
 	}
 
+	@Test
+	public void search() throws InvalidPuzzleError, InconsistentPuzzleError {
+		Puzzle[] puzzles = { four, six, nine, twelve, sixteen, twentyFive,
+				squiggly };
+		for (Puzzle puzzle : puzzles) {
+			puzzle.solve(Strategy.SEARCH);
+			assertTrue(puzzle.isSolved());
+			assertFalse(puzzle.hasConflicts());
+			assertTrue(puzzle.getNodesVisited() > 0);
+		}
+		escargot.search();
+		assertTrue(escargot.isSolved());
+		assertFalse(escargot.hasConflicts());
+		Puzzle bad = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 1 });
+		try {
+			bad.search();
+			fail("The puzzle has no solution.");
+		} catch (InconsistentPuzzleError error) {
+			assertFalse(bad.isSolved());
+		}
+	}
+
 	@Test
 	public void solve() throws InvalidPuzzleError, InconsistentPuzzleError {
 		four.solve();
@@ -346,6 +559,41 @@ public class PuzzleTest {
 		assertTrue(squiggly.isSolved());
 	}
 
+	@Test
+	public void stats() throws InconsistentPuzzleError {
+		assertEquals(null, nine.getStats());
+		Puzzle[] puzzles = { nine, sixteen, twentyFive, squiggly };
+		for (Puzzle puzzle : puzzles) {
+			SolveStats stats = new SolveStats();
+			puzzle.setStats(stats);
+			int before = 0;
+			for (Square square : puzzle.getSquares()) {
+				before += square.countCandidates();
+			}
+			puzzle.prune();
+			int after = 0;
+			for (Square square : puzzle.getSquares()) {
+				after += square.countCandidates();
+			}
+			assertEquals(1, stats.getPropagations());
+			assertTrue(stats.getSectionsSwept() >= puzzle.getGeometry()
+					.getSectionCount());
+			assertEquals(before - after, stats.getPruneEliminations()
+					+ stats.getSingletonEliminations());
+			assertEquals(0, stats.getGuesses());
+			puzzle.clone();
+			assertEquals(1, stats.getClones());
+		}
+		SolveStats stats = new SolveStats();
+		twentyFive.setStats(stats);
+		twentyFive.solve(Strategy.SEARCH);
+		assertTrue(stats.getGuesses() > 0);
+		assertTrue(stats.getMaxDepth() > 1);
+		assertTrue(stats.getSolveNanos() >= stats.getPropagateNanos());
+		stats.reset();
+		assertEquals(0, stats.getPropagations());
+	}
+
 	@Test
 	public void testClone() throws InvalidPuzzleError {
 		Puzzle start = PuzzleFactory.makePuzzle(new int[] { 0 });
@@ -0,0 +1,91 @@
+package sudoku.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the solutions of recently solved puzzles, by canonical form, so
+ * that a puzzle seen before, or one isomorphic to it, is not solved again.
+ * The least recently used solution is dropped once the cache is full. Safe
+ * to share between threads.
+ */
+public class SolutionCache {
+
+	private long evictions;
+	private long hits;
+	private long misses;
+	/** Solutions in canonical orientation, least recently used first. */
+	private Map<CanonicalForm, int[]> solutions;
+
+	public SolutionCache(final int capacity) {
+		solutions = new LinkedHashMap<CanonicalForm, int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<CanonicalForm, int[]> eldest) {
+				if (size() > capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/** Get the solution of a form, in canonical orientation, or null. */
+	public synchronized int[] get(CanonicalForm form) {
+		int[] solution = solutions.get(form);
+		if (solution == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return solution;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/** Remember the solution of a form, given in canonical orientation. */
+	public synchronized void put(CanonicalForm form, int[] solution) {
+		solutions.put(form, solution);
+	}
+
+	public synchronized int size() {
+		return solutions.size();
+	}
+
+	/**
+	 * Solve the puzzle, from the cache if an isomorphic puzzle has been
+	 * solved before, or else with the strategy. Solutions are only remembered
+	 * if the strategy finishes the puzzle.
+	 */
+	public void solve(Puzzle puzzle, Strategy strategy)
+			throws InconsistentPuzzleError {
+		CanonicalForm form = CanonicalForm.of(puzzle);
+		int[] solution = get(form);
+		if (solution != null) {
+			int[] values = form.fromCanonical(solution);
+			Square[] squares = puzzle.getSquares();
+			for (int i = 0; i < squares.length; i++) {
+				if (!squares[i].isFixed()) {
+					squares[i].fix(values[i]);
+				}
+			}
+			return;
+		}
+		puzzle.solve(strategy);
+		if (puzzle.isSolved()) {
+			put(form, form.toCanonical(puzzle.getValues()));
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SolutionCacheTest {
+
+	@Test
+	public void solve() throws InconsistentPuzzleError {
+		PuzzleGeometry nine = PuzzleGeometry.get(PuzzleFactory.dimsToRegions(
+				3, 3));
+		SolutionCache cache = new SolutionCache(2);
+		cache.solve(new Puzzle(CanonicalFormTest.NINE, nine), Strategy.SEARCH);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		int[] values = CanonicalFormTest.isomorph(CanonicalFormTest.NINE, 3,
+				3, new Random(3));
+		Puzzle isomorph = new Puzzle(values, nine);
+		cache.solve(isomorph, Strategy.SEARCH);
+		assertEquals(1, cache.getHits());
+		assertTrue(isomorph.isSolved());
+		assertFalse(isomorph.hasConflicts());
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != 0) {
+				assertEquals(values[i], isomorph.getSquares()[i].getValue());
+			}
+		}
+		PuzzleGenerator generator = new PuzzleGenerator(nine, Symmetry.NONE,
+				1);
+		for (int seed = 0; seed < 3; seed++) {
+			cache.solve(new Puzzle(generator.generate(new Random(seed)), nine),
+					Strategy.SEARCH);
+		}
+		generator.shutdown();
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(2, cache.size());
+	}
+}
@@ -0,0 +1,109 @@
+package sudoku.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts solutions on a work-stealing pool. The top levels of the dancing
+ * links search are split into tasks, each with its own copy of the values
+ * and matrix, and below them each task counts sequentially. All tasks share
+ * the running total, so the whole count stops as soon as the limit is
+ * reached.
+ */
+public class SolutionCounter {
+
+	/** Number of search levels split into tasks by default. */
+	public static final int SPLIT_DEPTH = 4;
+
+	private ForkJoinPool pool;
+	/** Number of search levels split into tasks. */
+	private int splitDepth;
+
+	/** Count on all available processors. */
+	public SolutionCounter() {
+		this(Runtime.getRuntime().availableProcessors(), SPLIT_DEPTH);
+	}
+
+	public SolutionCounter(int parallelism, int splitDepth) {
+		pool = new ForkJoinPool(parallelism);
+		this.splitDepth = splitDepth;
+	}
+
+	/**
+	 * Count the solutions that agree with the fixed squares of the puzzle,
+	 * stopping once limit have been found. The puzzle is left as it was.
+	 */
+	public int countSolutions(Puzzle puzzle, int limit) {
+		if (limit <= 0) {
+			return 0;
+		}
+		int count = pool.invoke(new Branch(puzzle.getValues(), puzzle
+				.getGeometry().getRegions(), 0, limit, new AtomicInteger()));
+		return Math.min(count, limit);
+	}
+
+	/** Check if the puzzle has exactly one solution. */
+	public boolean hasUniqueSolution(Puzzle puzzle) {
+		return countSolutions(puzzle, 2) == 1;
+	}
+
+	/** Stop the worker threads once the current counts are done. */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/** Count the solutions that agree with some fixed values. */
+	private class Branch extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private int depth;
+		private AtomicInteger found;
+		private int limit;
+		private int[][] regions;
+		/** Value of each square, 0 meaning unknown. */
+		private int[] values;
+
+		Branch(int[] values, int[][] regions, int depth, int limit,
+				AtomicInteger found) {
+			this.values = values;
+			this.regions = regions;
+			this.depth = depth;
+			this.limit = limit;
+			this.found = found;
+		}
+
+		protected Integer compute() {
+			if (found.get() >= limit) {
+				return 0;
+			}
+			DancingLinks links = new DancingLinks(values, regions);
+			if (depth >= splitDepth) {
+				return links.countSolutions(limit, found);
+			}
+			int[] rows = links.branch();
+			if (rows == null) {
+				return 0;
+			}
+			if (rows.length == 0) {
+				found.incrementAndGet();
+				return 1;
+			}
+			int width = regions.length;
+			List<Branch> branches = new ArrayList<Branch>();
+			for (int row : rows) {
+				int[] child = values.clone();
+				child[row / width] = row % width + 1;
+				branches.add(new Branch(child, regions, depth + 1, limit,
+						found));
+			}
+			int count = 0;
+			for (Branch branch : invokeAll(branches)) {
+				count += branch.join();
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SolutionCounterTest {
+
+	private SolutionCounter counter;
+
+	@Before
+	public void setUp() {
+		counter = new SolutionCounter(2, 2);
+	}
+
+	@After
+	public void tearDown() {
+		counter.shutdown();
+	}
+
+	@Test
+	public void countSolutions() throws InvalidPuzzleError {
+		Puzzle empty = PuzzleFactory.makePuzzle(new int[16]);
+		assertEquals(288, counter.countSolutions(empty, 1000));
+		assertEquals(10, counter.countSolutions(empty, 10));
+		assertEquals(0, counter.countSolutions(empty, 0));
+		// The puzzle itself is not touched.
+		assertEquals(288, empty.countSolutions(1000));
+		Puzzle bad = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 1 });
+		assertEquals(0, counter.countSolutions(bad, 2));
+	}
+
+	@Test
+	public void hasUniqueSolution() throws InvalidPuzzleError {
+		Puzzle four = PuzzleFactory.makePuzzle(new int[] { 3, 0, 0, 1, 2, 0, 0,
+				0, 0, 0, 0, 2, 1, 0, 0, 3 });
+		assertTrue(counter.hasUniqueSolution(four));
+		assertFalse(counter.hasUniqueSolution(PuzzleFactory
+				.makePuzzle(new int[256])));
+		assertFalse(counter.hasUniqueSolution(PuzzleFactory
+				.makePuzzle(new int[625])));
+	}
+}
@@ -0,0 +1,104 @@
+package sudoku.model;
+
+/**
+ * Figures on the work done solving a puzzle. A puzzle only keeps them when
+ * given an instance with setStats; otherwise counting costs no more than a
+ * null check. Times are in nanoseconds, and phases nest: propagation done
+ * while guessing counts towards both, and everything towards the solve.
+ */
+public class SolveStats {
+
+	/** Copies made of the puzzle. */
+	long clones;
+	/** Candidates tried by guessByIndex and branches taken by the search. */
+	long guesses;
+	/** Time spent in guessByIndex. */
+	long guessNanos;
+	/** Deepest nesting of marks. */
+	int maxDepth;
+	/** Times the propagation queue was run. */
+	long propagations;
+	/** Time spent propagating. */
+	long propagateNanos;
+	/** Candidates removed because the value is fixed elsewhere. */
+	long pruneEliminations;
+	/** Sections looked at while propagating. */
+	long sectionsSwept;
+	/** Candidates removed by fixing a value with one place to go. */
+	long singletonEliminations;
+	/** Time spent in solve. */
+	long solveNanos;
+
+	public long getClones() {
+		return clones;
+	}
+
+	public long getGuesses() {
+		return guesses;
+	}
+
+	public long getGuessNanos() {
+		return guessNanos;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getPropagations() {
+		return propagations;
+	}
+
+	public long getPropagateNanos() {
+		return propagateNanos;
+	}
+
+	/**
+	 * Count the candidates removed because their value is fixed elsewhere in
+	 * the section, as pruneSection does.
+	 */
+	public long getPruneEliminations() {
+		return pruneEliminations;
+	}
+
+	public long getSectionsSwept() {
+		return sectionsSwept;
+	}
+
+	/**
+	 * Count the candidates removed by fixing a value that has only one place
+	 * to go in a section, as findSingletonInSection does.
+	 */
+	public long getSingletonEliminations() {
+		return singletonEliminations;
+	}
+
+	public long getSolveNanos() {
+		return solveNanos;
+	}
+
+	/** Note that marks are nested depth deep. */
+	void reachDepth(int depth) {
+		if (depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+
+	/** Set every figure back to zero. */
+	public void reset() {
+		clones = guesses = guessNanos = propagations = propagateNanos = 0;
+		pruneEliminations = sectionsSwept = singletonEliminations = 0;
+		solveNanos = 0;
+		maxDepth = 0;
+	}
+
+	public String toString() {
+		return String.format("propagations %d, sections %d, eliminated %d by"
+				+ " pruning and %d by singletons, guesses %d, clones %d,"
+				+ " max depth %d, propagate %.3f ms, guess %.3f ms,"
+				+ " solve %.3f ms", propagations, sectionsSwept,
+				pruneEliminations, singletonEliminations, guesses, clones,
+				maxDepth, propagateNanos / 1e6, guessNanos / 1e6,
+				solveNanos / 1e6);
+	}
+}
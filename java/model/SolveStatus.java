@@ -0,0 +1,18 @@
+package sudoku.model;
+
+/** How a solve given a deadline ended. */
+public enum SolveStatus {
+	/** Every square is fixed. */
+	SOLVED,
+	/**
+	 * The strategy ran out of moves before the deadline, as PROPAGATE can on
+	 * hard puzzles.
+	 */
+	UNSOLVED,
+	/**
+	 * The deadline expired first. The puzzle keeps whatever candidates were
+	 * eliminated, all of them sound, but may not be pruned as far as it could
+	 * be.
+	 */
+	TIMED_OUT
+}
@@ -1,67 +1,92 @@
 package sudoku.model;
 
-import java.util.Arrays;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 public class Square {
 
-	/** Set the possible values for a square. */
-	public static void setValues(int numValues) {
-		VALUES = new Integer[numValues];
-		for (int i = 0; i < numValues; i++) {
-			VALUES[i] = i + 1;
+	/** Number of values that fit in the int candidate mask. */
+	public static final int MASK_BITS = Integer.SIZE;
+
+	/** Get the mask bit for a value; values outside the mask have no bit. */
+	public static int bit(int value) {
+		if (value < 1 || value > MASK_BITS) {
+			return 0;
 		}
+		return 1 << (value - 1);
 	}
 
-	private Set<Integer> candidates;
-	private int value;
-
-	private static Integer[] VALUES;
+	/** Make a square that may hold any value from 1 to numValues. */
+	public static Square unknown(int numValues) {
+		Square square = new Square();
+		square.fill(numValues);
+		return square;
+	}
 
-	public Square() {
-		try {
-			candidates = new HashSet<Integer>(Arrays.asList(VALUES));
-		} catch (NullPointerException error) {
-			throw (new NullPointerException(
-					"Square.VALUES has not been initialized."));
+	/** Set the bit for a value in a word set. */
+	protected static void setWordBit(long[] words, int value) {
+		if (value >= 1 && value <= words.length * Long.SIZE) {
+			words[(value - 1) >>> 6] |= 1L << ((value - 1) & 63);
 		}
 	}
 
+	/** Count how many words a word set of numValues values needs. */
+	protected static int wordCount(int numValues) {
+		return (numValues + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/** Bitmask of candidates; bit i is set when i + 1 is a candidate. */
+	private int mask;
+	/** Candidate words for puzzles wider than MASK_BITS, otherwise null. */
+	private long[] words;
+	private boolean fixed;
+	private int value;
+	/** Position of the square in its puzzle. */
+	int index;
+	/** Trail that records changes to the square, if any. */
+	Trail trail;
+	/** Stamp of the last trail mark the square was recorded under. */
+	int stamp;
+
+	private Square() {
+	}
+
 	public Square(int value) {
-		candidates = null;
-		this.value = value;
+		fix(value);
 	}
 
 	protected Square(int[] candidates) {
-		if (candidates.length == 1) {
-			fix(candidates[0]);
-		} else {
-			this.candidates = new HashSet<Integer>();
-			for (int item : candidates) {
-				this.candidates.add(item);
-			}
-		}
+		setCandidates(candidates);
 	}
 
 	/** Make a copy of the square. */
 	public Square clone() {
-		if (isFixed()) {
-			return new Square(value);
+		Square newSquare = new Square(value);
+		newSquare.fixed = fixed;
+		newSquare.mask = mask;
+		if (words != null) {
+			newSquare.words = words.clone();
 		}
-		Square newSquare = new Square();
-		newSquare.candidates = new HashSet<Integer>(candidates);
 		return newSquare;
 	}
 
 	/** Count the number of candidates the square has. */
 	public int countCandidates() {
-		if (candidates == null) {
+		if (fixed) {
 			return 1;
 		}
-		return candidates.size();
+		if (words == null) {
+			return Integer.bitCount(mask);
+		}
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
 	}
 
 	/**
@@ -75,73 +100,330 @@ public class Square {
 		if (isFixed()) {
 			return value == that.value;
 		}
-		return candidates.equals(that.candidates);
+		if (words == null && that.words == null) {
+			return mask == that.mask;
+		}
+		int length = Math.max(wordLength(), that.wordLength());
+		for (int i = 0; i < length; i++) {
+			if (getWord(i) != that.getWord(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Fill the square with every value from 1 to numValues. */
+	private void fill(int numValues) {
+		fixed = false;
+		value = 0;
+		if (numValues <= MASK_BITS) {
+			words = null;
+			mask = numValues == MASK_BITS ? -1 : (1 << numValues) - 1;
+		} else {
+			mask = 0;
+			words = new long[wordCount(numValues)];
+			for (int i = 1; i <= numValues; i++) {
+				setWordBit(words, i);
+			}
+		}
 	}
 
 	/** Fix the square to contain value. */
 	public void fix(int value) {
-		candidates = null;
+		save();
+		fixed = true;
+		mask = 0;
+		words = null;
 		this.value = value;
 	}
 
+	/** Fix the square if it has been narrowed down to one candidate. */
+	private void fixIfSingle() {
+		if (countCandidates() == 1) {
+			fix(getFirstCandidate());
+		}
+	}
+
+	/**
+	 * Get a view of the candidates, or null if the square is fixed. Prefer
+	 * getMask or getWords in hot code; this view boxes every value.
+	 */
 	public Set<Integer> getCandidates() {
-		return candidates;
+		if (fixed) {
+			return null;
+		}
+		return new CandidateView();
+	}
+
+	/** Get the candidates as an array of values in increasing order. */
+	public int[] getCandidateValues() {
+		if (fixed) {
+			return new int[] { value };
+		}
+		int[] result = new int[countCandidates()];
+		int index = 0;
+		for (int candidate = getFirstCandidate(); candidate != 0; candidate = getNextCandidate(candidate)) {
+			result[index] = candidate;
+			index++;
+		}
+		return result;
+	}
+
+	/** Get the smallest candidate, or 0 if there are none. */
+	public int getFirstCandidate() {
+		return getNextCandidate(0);
+	}
+
+	/** Get the candidate bitmask of a square at most MASK_BITS wide. */
+	public int getMask() {
+		return mask;
+	}
+
+	/** Get the smallest candidate greater than after, or 0 if there is none. */
+	public int getNextCandidate(int after) {
+		if (fixed) {
+			return after < value ? value : 0;
+		}
+		if (words == null) {
+			if (after >= MASK_BITS) {
+				return 0;
+			}
+			int remaining = mask & (-1 << after);
+			if (remaining == 0) {
+				return 0;
+			}
+			return Integer.numberOfTrailingZeros(remaining) + 1;
+		}
+		for (int i = after >>> 6; i < words.length; i++) {
+			long remaining = words[i];
+			if (i == after >>> 6) {
+				remaining &= -1L << (after & 63);
+			}
+			if (remaining != 0) {
+				return i * Long.SIZE + Long.numberOfTrailingZeros(remaining)
+						+ 1;
+			}
+		}
+		return 0;
 	}
 
 	public int getValue() {
 		return value;
 	}
 
+	/** Get word i of the candidates, reading the mask as word 0. */
+	private long getWord(int i) {
+		if (words == null) {
+			return i == 0 ? mask & 0xffffffffL : 0;
+		}
+		return i < words.length ? words[i] : 0;
+	}
+
+	/** Get the candidate words of a square more than MASK_BITS wide. */
+	public long[] getWords() {
+		return words;
+	}
+
 	public boolean hasCandidate(int candidate) {
-		if (candidates == null) {
+		if (fixed || candidate < 1) {
 			return false;
 		}
-		return candidates.contains(candidate);
+		if (words == null) {
+			return (mask & bit(candidate)) != 0;
+		}
+		int i = (candidate - 1) >>> 6;
+		return i < words.length
+				&& (words[i] & (1L << ((candidate - 1) & 63))) != 0;
 	}
 
 	/** Check if the square is fixed. */
 	public boolean isFixed() {
-		return candidates == null;
+		return fixed;
+	}
+
+	/** Check if the candidates are held in words rather than a mask. */
+	public boolean isWide() {
+		return words != null;
 	}
 
 	/** Remove the unavailable candidates from the squares list of candidates. */
 	public void remove(Collection<Integer> unavailable) {
-		candidates.removeAll(unavailable);
-		if (candidates.size() == 1) {
-			for (int item : candidates) {
-				fix(item);
+		for (int candidate : unavailable) {
+			removeCandidate(candidate);
+		}
+		fixIfSingle();
+	}
+
+	/**
+	 * Remove the candidates set in the unavailable mask. Returns true if any
+	 * were removed.
+	 */
+	public boolean remove(int unavailable) {
+		if ((getWord(0) & unavailable & 0xffffffffL) == 0) {
+			return false;
+		}
+		save();
+		if (words == null) {
+			mask &= ~unavailable;
+		} else {
+			words[0] &= ~(unavailable & 0xffffffffL);
+		}
+		fixIfSingle();
+		return true;
+	}
+
+	/**
+	 * Remove the candidates set in the unavailable words. Returns true if any
+	 * were removed.
+	 */
+	public boolean remove(long[] unavailable) {
+		boolean overlap = false;
+		for (int i = 0; i < unavailable.length && !overlap; i++) {
+			overlap = (getWord(i) & unavailable[i]) != 0;
+		}
+		if (!overlap) {
+			return false;
+		}
+		save();
+		if (words == null) {
+			mask &= ~(int) unavailable[0];
+		} else {
+			for (int i = 0; i < words.length && i < unavailable.length; i++) {
+				words[i] &= ~unavailable[i];
 			}
 		}
+		fixIfSingle();
+		return true;
+	}
+
+	/** Remove one candidate without fixing the square. */
+	private void removeCandidate(int candidate) {
+		if (fixed || candidate < 1) {
+			return;
+		}
+		save();
+		if (words == null) {
+			mask &= ~bit(candidate);
+		} else if ((candidate - 1) >>> 6 < words.length) {
+			words[(candidate - 1) >>> 6] &= ~(1L << ((candidate - 1) & 63));
+		}
+	}
+
+	/** Put back state recorded on a trail. */
+	void restore(int mask, long[] words, boolean fixed, int value, int stamp) {
+		this.mask = mask;
+		this.words = words;
+		this.fixed = fixed;
+		this.value = value;
+		this.stamp = stamp;
+	}
+
+	/** Record the current state on the trail before changing it. */
+	private void save() {
+		if (trail != null) {
+			trail.save(this);
+		}
 	}
 
 	/** Set the square to contain the given list of candidates. */
 	protected void setCandidates(int[] candidates) {
 		if (candidates.length == 1) {
 			fix(candidates[0]);
+			return;
+		}
+		save();
+		int max = words == null ? 0 : words.length * Long.SIZE;
+		for (int item : candidates) {
+			max = Math.max(max, item);
+		}
+		fixed = false;
+		value = 0;
+		mask = 0;
+		if (max <= MASK_BITS) {
+			words = null;
+			for (int item : candidates) {
+				mask |= bit(item);
+			}
 		} else {
-			this.candidates = new HashSet<Integer>();
+			words = new long[wordCount(max)];
 			for (int item : candidates) {
-				this.candidates.add(item);
+				setWordBit(words, item);
 			}
 		}
 	}
 
 	public void setCandidates(List<Integer> candidates) {
-		if (candidates.size() == 1) {
-			fix(candidates.get(0));
-		} else {
-			this.candidates = new HashSet<Integer>(candidates);
+		int[] values = new int[candidates.size()];
+		int index = 0;
+		for (int item : candidates) {
+			values[index] = item;
+			index++;
 		}
+		setCandidates(values);
 	}
 
 	public String toString() {
 		if (isFixed()) {
 			return "" + value;
 		}
-		String result = "[";
-		for (int candidate : candidates) {
-			result += candidate + ", ";
+		StringBuilder result = new StringBuilder("[");
+		for (int candidate = getFirstCandidate(); candidate != 0; candidate = getNextCandidate(candidate)) {
+			result.append(candidate).append(", ");
+		}
+		return result.append("]").toString();
+	}
+
+	/** Number of words, counting the mask as a single word. */
+	private int wordLength() {
+		return words == null ? 1 : words.length;
+	}
+
+	/** Live set view over the candidates of an unfixed square. */
+	private class CandidateView extends AbstractSet<Integer> {
+
+		public boolean contains(Object candidate) {
+			return candidate instanceof Integer
+					&& hasCandidate((Integer) candidate);
+		}
+
+		public Iterator<Integer> iterator() {
+			return new Iterator<Integer>() {
+				private int last = 0;
+				private int next = getNextCandidate(0);
+
+				public boolean hasNext() {
+					return next != 0;
+				}
+
+				public Integer next() {
+					if (next == 0) {
+						throw (new NoSuchElementException());
+					}
+					last = next;
+					next = getNextCandidate(next);
+					return last;
+				}
+
+				public void remove() {
+					if (last == 0) {
+						throw (new IllegalStateException());
+					}
+					removeCandidate(last);
+					last = 0;
+				}
+			};
+		}
+
+		public boolean remove(Object candidate) {
+			if (!contains(candidate)) {
+				return false;
+			}
+			removeCandidate((Integer) candidate);
+			return true;
+		}
+
+		public int size() {
+			return fixed ? 0 : countCandidates();
 		}
-		return result + "]";
 	}
-}
\ No newline at end of file
+}
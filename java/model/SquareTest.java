@@ -0,0 +1,56 @@
+package sudoku.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SquareTest {
+
+	@Test
+	public void candidates() {
+		Square square = new Square(new int[] { 2, 5, 9 });
+		assertFalse(square.isWide());
+		assertEquals(3, square.countCandidates());
+		assertArrayEquals(new int[] { 2, 5, 9 }, square.getCandidateValues());
+		Set<Integer> view = square.getCandidates();
+		assertTrue(view.contains(5));
+		assertFalse(view.contains(4));
+		view.remove(5);
+		assertFalse(square.hasCandidate(5));
+		assertEquals(2, view.size());
+	}
+
+	@Test
+	public void removeMask() {
+		Square square = new Square(new int[] { 1, 3, 32 });
+		square.remove(Square.bit(1));
+		assertFalse(square.isFixed());
+		square.remove(Square.bit(32));
+		assertTrue(square.isFixed());
+		assertEquals(3, square.getValue());
+		assertEquals(0, Square.bit(0));
+	}
+
+	@Test
+	public void removeWords() {
+		Square square = new Square(new int[] { 1, 40, 64, 65 });
+		assertTrue(square.isWide());
+		long[] unavailable = new long[Square.wordCount(65)];
+		Square.setWordBit(unavailable, 40);
+		Square.setWordBit(unavailable, 65);
+		square.remove(unavailable);
+		assertArrayEquals(new int[] { 1, 64 }, square.getCandidateValues());
+		Square copy = square.clone();
+		assertTrue(square.equals(copy));
+		square.remove(Arrays.asList(1));
+		assertTrue(square.isFixed());
+		assertEquals(64, square.getValue());
+		assertFalse(square.equals(copy));
+	}
+}
@@ -0,0 +1,20 @@
+package sudoku.model;
+
+/** The ways a puzzle can be solved. */
+public enum Strategy {
+	/**
+	 * Prune, then try each square with two candidates. Stops when a round
+	 * makes no progress, so hard puzzles may be left unsolved.
+	 */
+	PROPAGATE,
+	/**
+	 * Depth-first search on the square with the fewest candidates, pruning at
+	 * every node. Always finds a solution if there is one.
+	 */
+	SEARCH,
+	/**
+	 * Exact cover search with dancing links, built from the region layout.
+	 * Always finds a solution if there is one.
+	 */
+	DANCING_LINKS
+}
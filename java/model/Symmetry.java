@@ -0,0 +1,25 @@
+package sudoku.model;
+
+/** The symmetries a generated puzzle's clues can be made to have. */
+public enum Symmetry {
+	/** Clues go anywhere. */
+	NONE,
+	/** Each clue has a partner in the square turned half way round. */
+	ROTATIONAL,
+	/** Each clue has a partner reflected left to right. */
+	MIRROR;
+
+	/** Get the square paired with a square of a puzzle of the given width. */
+	public int partner(int index, int width) {
+		int row = index / width;
+		int column = index % width;
+		switch (this) {
+		case ROTATIONAL:
+			return (width - 1 - row) * width + width - 1 - column;
+		case MIRROR:
+			return row * width + width - 1 - column;
+		default:
+			return index;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package sudoku.model;
+
+/**
+ * Record of changes made to squares since a mark, so that speculative work
+ * can be rolled back in place instead of on a copy of the puzzle. Nothing is
+ * recorded while no mark is open, and nothing is allocated until the first
+ * mark.
+ */
+public class Trail {
+
+	/** Squares whose earlier state is on the trail. */
+	private Square[] squares;
+	/** Saved candidate masks. */
+	private int[] masks;
+	/** Saved candidate words, for squares wider than the mask. */
+	private long[][] words;
+	/** Saved fixed flags. */
+	private boolean[] fixeds;
+	/** Saved values. */
+	private int[] values;
+	/** Saved stamps, so a square is recorded once per mark. */
+	private int[] stamps;
+	/** Number of entries on the trail. */
+	private int size;
+
+	/** Trail size at each open mark. */
+	private int[] marks;
+	/** Stamp of each open mark. */
+	private int[] markStamps;
+	/** Number of open marks. */
+	private int depth;
+	/** Last stamp handed out. */
+	private int lastStamp;
+
+	/**
+	 * Close the mark, keeping the changes made since. They still belong to
+	 * any enclosing mark, so they are only forgotten once no mark is open.
+	 */
+	public void commit(int mark) {
+		depth = mark;
+		if (depth == 0) {
+			while (size > 0) {
+				size--;
+				squares[size] = null;
+				words[size] = null;
+			}
+		}
+	}
+
+	/** Number of open marks. */
+	public int getDepth() {
+		return depth;
+	}
+
+	/** Open a mark and return its level, to be passed to undo. */
+	public int mark() {
+		if (marks == null) {
+			marks = new int[16];
+			markStamps = new int[16];
+			squares = new Square[64];
+			masks = new int[64];
+			words = new long[64][];
+			fixeds = new boolean[64];
+			values = new int[64];
+			stamps = new int[64];
+		}
+		if (depth == marks.length) {
+			marks = grow(marks);
+			markStamps = grow(markStamps);
+		}
+		marks[depth] = size;
+		lastStamp++;
+		markStamps[depth] = lastStamp;
+		return depth++;
+	}
+
+	/** Record the state of a square before it is changed. */
+	protected void save(Square square) {
+		if (depth == 0 || square.stamp == markStamps[depth - 1]) {
+			return;
+		}
+		if (size == squares.length) {
+			int length = size * 2;
+			Square[] newSquares = new Square[length];
+			long[][] newWords = new long[length][];
+			boolean[] newFixeds = new boolean[length];
+			System.arraycopy(squares, 0, newSquares, 0, size);
+			System.arraycopy(words, 0, newWords, 0, size);
+			System.arraycopy(fixeds, 0, newFixeds, 0, size);
+			squares = newSquares;
+			words = newWords;
+			fixeds = newFixeds;
+			masks = grow(masks);
+			values = grow(values);
+			stamps = grow(stamps);
+		}
+		squares[size] = square;
+		masks[size] = square.getMask();
+		long[] squareWords = square.getWords();
+		words[size] = squareWords == null ? null : squareWords.clone();
+		fixeds[size] = square.isFixed();
+		values[size] = square.getValue();
+		stamps[size] = square.stamp;
+		size++;
+		square.stamp = markStamps[depth - 1];
+	}
+
+	/** Restore every square changed since the mark, and close it. */
+	public void undo(int mark) {
+		int target = marks[mark];
+		while (size > target) {
+			size--;
+			squares[size].restore(masks[size], words[size], fixeds[size],
+					values[size], stamps[size]);
+			squares[size] = null;
+			words[size] = null;
+		}
+		depth = mark;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] result = new int[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+}